@@ -2,6 +2,7 @@ package org.tensorflow.lite.examples.imageclassification;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -24,7 +25,7 @@ public class ImageClassificationTest {
     );
 
     @Test
-    public void classificationResultsShouldNotChange() {
+    public void classificationResultsShouldNotChange() throws InterruptedException {
         ImageClassifierHelper helper = ImageClassifierHelper.create(
                 InstrumentationRegistry.getInstrumentation().getContext(),
                 new ImageClassifierHelper.ClassifierListener() {
@@ -36,7 +37,8 @@ public class ImageClassificationTest {
                     @Override
                     public void onResults(
                             List<Classifications> results,
-                            long inferenceTime
+                            long inferenceTime,
+                            long frameTimestampNanos
                     ) {
                         assertNotNull(results.get(0));
                         assertEquals(controlCategories.size(),
@@ -50,7 +52,9 @@ public class ImageClassificationTest {
                     }
                 });
         helper.setThreshold(0.0f);
-        helper.classifyAndClose(loadImage("coffee.jpg"), 0);
+        assertTrue(helper.awaitReady(5000));
+        helper.classify(loadImage("coffee.jpg"), 0);
+        helper.closeModel();
     }
 
     private Bitmap loadImage(String fileName) {
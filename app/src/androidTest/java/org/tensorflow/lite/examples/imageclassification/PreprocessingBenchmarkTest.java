@@ -0,0 +1,96 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.support.image.ImageProcessor;
+import org.tensorflow.lite.support.image.TensorImage;
+import org.tensorflow.lite.support.image.ops.ResizeOp;
+import org.tensorflow.lite.support.image.ops.Rot90Op;
+
+/**
+ * Compares the fused {@link RotateResizeKernel} with the chain it replaced:
+ * rotating the full resolution bitmap with {@link Rot90Op}, then resizing it
+ * to the model input. Reports the median time of each per rotation.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PreprocessingBenchmarkTest {
+    private static final String TAG = "PreprocessingBenchmark";
+    private static final int CAMERA_WIDTH = 1280;
+    private static final int CAMERA_HEIGHT = 960;
+    private static final int INPUT_SIZE = 224;
+    private static final int WARMUP_RUNS = 5;
+    private static final int RUNS = 30;
+
+    @Test
+    public void fusedKernelAgainstRotateThenResize() {
+        Bitmap bitmap = noiseBitmap();
+        int[] pixels = new int[CAMERA_WIDTH * CAMERA_HEIGHT];
+        ByteBuffer input = ByteBuffer.allocateDirect(INPUT_SIZE * INPUT_SIZE * 3)
+                .order(ByteOrder.nativeOrder());
+        RotateResizeKernel kernel = new RotateResizeKernel(INPUT_SIZE,
+                INPUT_SIZE);
+        TensorImage tensorImage = new TensorImage(DataType.UINT8);
+        Bundle results = new Bundle();
+
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            ImageProcessor chain = new ImageProcessor.Builder()
+                    .add(new Rot90Op(-rotation / 90))
+                    .add(new ResizeOp(INPUT_SIZE, INPUT_SIZE,
+                            ResizeOp.ResizeMethod.BILINEAR))
+                    .build();
+            int currentRotation = rotation;
+            long chainNanos = medianNanos(() -> {
+                tensorImage.load(bitmap);
+                chain.process(tensorImage);
+            });
+            long kernelNanos = medianNanos(() -> {
+                bitmap.getPixels(pixels, 0, CAMERA_WIDTH, 0, 0, CAMERA_WIDTH,
+                        CAMERA_HEIGHT);
+                kernel.process(pixels, CAMERA_WIDTH, CAMERA_HEIGHT,
+                        currentRotation, input);
+            });
+
+            String line = String.format(Locale.US,
+                    "rotation %d: rotate+resize %.2f ms, fused %.2f ms",
+                    rotation, chainNanos / 1e6, kernelNanos / 1e6);
+            Log.i(TAG, line);
+            results.putString("rotation_" + rotation, line);
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    private static long medianNanos(Runnable run) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            run.run();
+        }
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+
+    private static Bitmap noiseBitmap() {
+        int[] pixels = new int[CAMERA_WIDTH * CAMERA_HEIGHT];
+        Random random = new Random(0);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return Bitmap.createBitmap(pixels, CAMERA_WIDTH, CAMERA_HEIGHT,
+                Bitmap.Config.ARGB_8888);
+    }
+}
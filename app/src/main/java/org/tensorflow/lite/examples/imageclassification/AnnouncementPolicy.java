@@ -0,0 +1,52 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+/**
+ * Decides when the top label is announced. A label is only announced once it
+ * has stayed on top for the debounce interval, so labels that flicker for a
+ * frame or two are never spoken, and a label is not announced again until a
+ * different one has been announced. Not thread-safe.
+ */
+public class AnnouncementPolicy {
+    private final long debounceNanos;
+    private String candidate;
+    private long candidateSinceNanos;
+    private String lastAnnounced;
+
+    public AnnouncementPolicy(long debounceNanos) {
+        if (debounceNanos < 0) {
+            throw new IllegalArgumentException("Debounce must not be negative");
+        }
+        this.debounceNanos = debounceNanos;
+    }
+
+    /** Records the label now on top, or null if there is none. */
+    public void report(String label, long nowNanos) {
+        if (label == null ? candidate != null : !label.equals(candidate)) {
+            candidate = label;
+            candidateSinceNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Returns the label to announce now, or null, and counts it as announced.
+     */
+    public String poll(long nowNanos) {
+        if (candidate == null || candidate.equals(lastAnnounced)
+                || nowNanos - candidateSinceNanos < debounceNanos) {
+            return null;
+        }
+        lastAnnounced = candidate;
+        return candidate;
+    }
+
+    /**
+     * Time until the label on top is due to be announced, or -1 if it has
+     * already been announced or there is none.
+     */
+    public long nanosUntilDue(long nowNanos) {
+        if (candidate == null || candidate.equals(lastAnnounced)) {
+            return -1;
+        }
+        return Math.max(0, candidateSinceNanos + debounceNanos - nowNanos);
+    }
+}
@@ -0,0 +1,319 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speaks the top label on its own thread, never on the UI thread. Labels are
+ * debounced and deduplicated by an {@link AnnouncementPolicy}. The labels of
+ * the current model are synthesized in the background into audio files kept
+ * in the cache directory, and registered with the speaking engine, so a known
+ * label starts playing without waiting for synthesis. A second engine does
+ * the synthesis, so announcements never flush or wait behind it. The time
+ * from deciding to announce until speech starts is recorded as
+ * {@link MetricsRegistry.Stage#SPEECH}.
+ */
+public class Announcer {
+    private static final String TAG = "Announcer";
+    private static final long DEBOUNCE_MS = 300;
+    private static final Locale LOCALE = Locale.US;
+    private static final String CACHE_DIR = "speech";
+    private static final String AUDIO_EXTENSION = ".wav";
+    private static final String SYNTHESIS_ID = "synthesis";
+
+    private final Context context;
+    private final MetricsRegistry metrics;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final AnnouncementPolicy policy = new AnnouncementPolicy(
+            TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MS));
+    private final Runnable announcePending = this::announcePending;
+    // Written by the thread that reports labels only.
+    private volatile String reportedLabel;
+
+    // Everything below is only touched on the announcer thread.
+    private TextToSpeech speaker;
+    private TextToSpeech synthesizer;
+    private boolean speakerReady;
+    private boolean synthesizerReady;
+    private File cacheDir;
+    private final Set<String> cachedLabels = new HashSet<>();
+    private final ArrayDeque<String> uncachedLabels = new ArrayDeque<>();
+    private String synthesizing;
+    private final Map<String, Long> requestNanos = new HashMap<>();
+    private long nextUtterance;
+
+    public Announcer(Context context, MetricsRegistry metrics) {
+        this.context = context.getApplicationContext();
+        this.metrics = metrics;
+        thread = new HandlerThread(TAG);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Connects to the speech engines. A label reported before they are ready
+     * is announced once they are.
+     */
+    public void start() {
+        handler.post(() -> {
+            if (speaker != null) {
+                return;
+            }
+            speaker = new TextToSpeech(context,
+                    status -> handler.post(() -> onSpeakerInit(status)));
+            synthesizer = new TextToSpeech(context,
+                    status -> handler.post(() -> onSynthesizerInit(status)));
+        });
+    }
+
+    /** Caches the audio of every label of {@code model}, in the background. */
+    public void useModel(int model) {
+        handler.post(() -> {
+            List<String> labels;
+            try {
+                labels = ModelRegistry.getInstance(context).loadLabels(model);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Cannot read the labels of model " + model, e);
+                return;
+            }
+            uncachedLabels.clear();
+            for (String label : labels) {
+                if (!cachedLabels.contains(label)) {
+                    uncachedLabels.add(label);
+                }
+            }
+            synthesizeNext();
+        });
+    }
+
+    /**
+     * Reports the label now on top, or null if there is none. Cheap enough to
+     * call for every result from any single thread; only changes reach the
+     * announcer thread.
+     */
+    public void report(String label) {
+        String previous = reportedLabel;
+        if (label == null ? previous == null : label.equals(previous)) {
+            return;
+        }
+        reportedLabel = label;
+        long nowNanos = System.nanoTime();
+        handler.post(() -> {
+            // Labels about to be spoken are synthesized first.
+            if (label != null && uncachedLabels.remove(label)) {
+                uncachedLabels.addFirst(label);
+            }
+            policy.report(label, nowNanos);
+            handler.removeCallbacks(announcePending);
+            announcePending();
+        });
+    }
+
+    /** Stops speaking and shuts the engines down. */
+    public void close() {
+        handler.removeCallbacksAndMessages(null);
+        handler.post(() -> {
+            if (speaker != null) {
+                speaker.stop();
+                speaker.shutdown();
+                synthesizer.shutdown();
+            }
+            thread.quitSafely();
+        });
+    }
+
+    // Speaks the label on top if it is due, or checks again when it will be.
+    private void announcePending() {
+        if (!speakerReady) {
+            return;
+        }
+        speak(policy.poll(System.nanoTime()));
+        long nanos = policy.nanosUntilDue(System.nanoTime());
+        if (nanos >= 0) {
+            handler.postDelayed(announcePending,
+                    TimeUnit.NANOSECONDS.toMillis(nanos) + 1);
+        }
+    }
+
+    private void speak(String label) {
+        if (label == null) {
+            return;
+        }
+        String utteranceId = "announcement-" + nextUtterance++;
+        requestNanos.put(utteranceId, System.nanoTime());
+        // Known labels play from their cached file.
+        speaker.speak(label, TextToSpeech.QUEUE_FLUSH, null, utteranceId);
+    }
+
+    private void onSpeakerInit(int status) {
+        if (status != TextToSpeech.SUCCESS) {
+            Log.e(TAG, "Speech engine initialization failed.");
+            return;
+        }
+        int result = speaker.setLanguage(LOCALE);
+        if (result == TextToSpeech.LANG_MISSING_DATA
+                || result == TextToSpeech.LANG_NOT_SUPPORTED) {
+            Log.e(TAG, "Language is not supported.");
+        }
+        speaker.setOnUtteranceProgressListener(new UtteranceProgressListener() {
+            @Override
+            public void onStart(String utteranceId) {
+                long startNanos = System.nanoTime();
+                handler.post(() -> onSpeechStarted(utteranceId, startNanos));
+            }
+
+            @Override
+            public void onDone(String utteranceId) {
+            }
+
+            @Override
+            public void onStop(String utteranceId, boolean interrupted) {
+                handler.post(() -> requestNanos.remove(utteranceId));
+            }
+
+            @Override
+            public void onError(String utteranceId) {
+                handler.post(() -> requestNanos.remove(utteranceId));
+            }
+        });
+        // Audio cached by an earlier run is only valid for the same engine.
+        cacheDir = new File(context.getCacheDir(), CACHE_DIR + File.separator
+                + speaker.getDefaultEngine() + "_" + LOCALE);
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            Log.w(TAG, "Cannot create " + cacheDir);
+            cacheDir = null;
+        } else {
+            registerCachedAudio();
+        }
+        speakerReady = true;
+        synthesizeNext();
+        announcePending();
+    }
+
+    private void onSynthesizerInit(int status) {
+        if (status != TextToSpeech.SUCCESS) {
+            Log.e(TAG, "Synthesis engine initialization failed.");
+            return;
+        }
+        synthesizer.setLanguage(LOCALE);
+        synthesizer.setOnUtteranceProgressListener(
+                new UtteranceProgressListener() {
+                    @Override
+                    public void onStart(String utteranceId) {
+                    }
+
+                    @Override
+                    public void onDone(String utteranceId) {
+                        handler.post(() -> onSynthesisDone(true));
+                    }
+
+                    @Override
+                    public void onError(String utteranceId) {
+                        handler.post(() -> onSynthesisDone(false));
+                    }
+                });
+        synthesizerReady = true;
+        synthesizeNext();
+    }
+
+    private void registerCachedAudio() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String label = labelOf(file.getName());
+            if (label != null) {
+                speaker.addSpeech(label, file);
+                cachedLabels.add(label);
+                uncachedLabels.remove(label);
+            }
+        }
+        Log.i(TAG, cachedLabels.size() + " labels cached in " + cacheDir);
+    }
+
+    private void synthesizeNext() {
+        // The speaker must be ready to know the engine, and the cache.
+        if (synthesizing != null || !synthesizerReady || !speakerReady
+                || cacheDir == null || uncachedLabels.isEmpty()) {
+            return;
+        }
+        synthesizing = uncachedLabels.poll();
+        if (synthesizer.synthesizeToFile(synthesizing, null,
+                partialFile(synthesizing), SYNTHESIS_ID)
+                != TextToSpeech.SUCCESS) {
+            onSynthesisDone(false);
+        }
+    }
+
+    private void onSynthesisDone(boolean success) {
+        String label = synthesizing;
+        synthesizing = null;
+        if (label == null) {
+            return;
+        }
+        File file = audioFile(label);
+        if (success && partialFile(label).renameTo(file)) {
+            speaker.addSpeech(label, file);
+            cachedLabels.add(label);
+        } else {
+            Log.w(TAG, "Cannot cache the audio of " + label);
+            partialFile(label).delete();
+        }
+        synthesizeNext();
+    }
+
+    private void onSpeechStarted(String utteranceId, long startNanos) {
+        Long requested = requestNanos.remove(utteranceId);
+        if (requested != null) {
+            metrics.record(MetricsRegistry.Stage.SPEECH,
+                    (startNanos - requested) / 1000);
+        }
+    }
+
+    private File audioFile(String label) {
+        return new File(cacheDir, fileNameOf(label) + AUDIO_EXTENSION);
+    }
+
+    private File partialFile(String label) {
+        return new File(cacheDir, fileNameOf(label) + ".partial");
+    }
+
+    private static String fileNameOf(String label) {
+        try {
+            return URLEncoder.encode(label, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String labelOf(String fileName) {
+        if (!fileName.endsWith(AUDIO_EXTENSION)) {
+            return null;
+        }
+        try {
+            return URLDecoder.decode(fileName.substring(0,
+                    fileName.length() - AUDIO_EXTENSION.length()), "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Headless entry point for {@link BatchClassifier}. Runs without any
+ * activity, so a folder of photos can be classified from a shell:
+ *
+ * <pre>
+ * adb shell am instrument -w \
+ *     -e input /sdcard/Pictures/products \
+ *     -e output /sdcard/Download/results.csv \
+ *     org.tensorflow.lite.examples.imageclassification/.BatchClassificationInstrumentation
+ * </pre>
+ *
+ * <p>Arguments: {@code input} is a directory, or {@code assets:<folder>} for
+ * images bundled in the APK. Optional: {@code output} (defaults to the app's
+ * external files directory), {@code format} ({@code csv} or {@code jsonl}),
+ * {@code workers}, {@code classifiers}, {@code threads}, {@code delegate},
+ * {@code model}, {@code threshold} and {@code max_results}.
+ *
+ * <p>With {@code -e compare_variants true}, the images are instead run
+ * through every precision variant of the model, and a {@link
+ * VariantComparison} report of latency against top-1 agreement is written
+ * as CSV. The fastest variant that agrees on at least {@code min_agreement}
+ * of the images becomes this device's choice for the model.
+ */
+public class BatchClassificationInstrumentation extends Instrumentation {
+    private static final String TAG = "BatchClassification";
+    private static final String ASSETS_PREFIX = "assets:";
+
+    private Bundle arguments;
+
+    @Override
+    public void onCreate(Bundle arguments) {
+        super.onCreate(arguments);
+        this.arguments = arguments;
+        start();
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        Bundle results = new Bundle();
+        try {
+            Object report = Boolean.parseBoolean(
+                    arguments.getString("compare_variants"))
+                    ? compareVariants(getTargetContext())
+                    : run(getTargetContext());
+            Log.i(TAG, report.toString());
+            results.putString(REPORT_KEY_STREAMRESULT, report + "\n");
+            finish(Activity.RESULT_OK, results);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Batch classification failed", e);
+            results.putString(REPORT_KEY_STREAMRESULT,
+                    "Batch classification failed: " + e + "\n");
+            finish(Activity.RESULT_CANCELED, results);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(Activity.RESULT_CANCELED, results);
+        }
+    }
+
+    private BatchClassifier.Report run(Context context)
+            throws IOException, InterruptedException {
+        BatchClassifier.Source source = source(context);
+
+        BatchResultWriter.Format format =
+                "jsonl".equals(arguments.getString("format"))
+                        ? BatchResultWriter.Format.JSON_LINES
+                        : BatchResultWriter.Format.CSV;
+        String output = arguments.getString("output");
+        File outputFile = output != null ? new File(output)
+                : new File(context.getExternalFilesDir(null),
+                        format == BatchResultWriter.Format.CSV
+                                ? "batch_results.csv" : "batch_results.jsonl");
+
+        BatchClassifier classifier = new BatchClassifier(context, config(),
+                intArgument("workers",
+                        Runtime.getRuntime().availableProcessors()),
+                intArgument("classifiers", 1));
+
+        try (BatchResultWriter writer = BatchResultWriter.create(format,
+                new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(outputFile),
+                        StandardCharsets.UTF_8)))) {
+            Log.i(TAG, "Writing results to " + outputFile);
+            return classifier.run(source, writer);
+        }
+    }
+
+    private VariantComparison.Report compareVariants(Context context)
+            throws IOException {
+        BatchClassifier.Source source = source(context);
+        String output = arguments.getString("output");
+        File outputFile = output != null ? new File(output)
+                : new File(context.getExternalFilesDir(null),
+                        "variant_comparison.csv");
+        VariantComparison.Report report = new VariantComparison(context)
+                .compare(config(), source, floatArgument("min_agreement",
+                        VariantComparison.DEFAULT_MIN_AGREEMENT));
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(outputFile), StandardCharsets.UTF_8))) {
+            Log.i(TAG, "Writing variant comparison to " + outputFile);
+            report.writeCsv(writer);
+        }
+        return report;
+    }
+
+    private BatchClassifier.Source source(Context context) throws IOException {
+        String input = arguments.getString("input");
+        if (input == null) {
+            throw new IllegalArgumentException("Missing -e input <directory>");
+        }
+        return input.startsWith(ASSETS_PREFIX)
+                ? new BatchClassifier.AssetSource(context.getAssets(),
+                        input.substring(ASSETS_PREFIX.length()))
+                : new BatchClassifier.DirectorySource(new File(input));
+    }
+
+    private ClassifierConfig config() {
+        return new ClassifierConfig(
+                floatArgument("threshold", 0f),
+                intArgument("threads", 2),
+                intArgument("max_results", 3),
+                intArgument("delegate", ImageClassifierHelper.DELEGATE_CPU),
+                intArgument("model", 0));
+    }
+
+    private int intArgument(String key, int defaultValue) {
+        String value = arguments.getString(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private float floatArgument(String key, float defaultValue) {
+        String value = arguments.getString(key);
+        return value != null ? Float.parseFloat(value) : defaultValue;
+    }
+}
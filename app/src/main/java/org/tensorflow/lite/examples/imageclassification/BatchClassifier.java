@@ -0,0 +1,401 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.support.image.TensorImage;
+import org.tensorflow.lite.support.label.Category;
+import org.tensorflow.lite.task.vision.classifier.Classifications;
+import org.tensorflow.lite.task.vision.classifier.ImageClassifier;
+
+/**
+ * Classifies every image of a {@link Source} without any UI. Images are
+ * decoded and preprocessed by a pool of worker threads and handed to one
+ * thread per classifier instance; results are streamed to a
+ * {@link BatchResultWriter} as soon as each image is done. Both hand-offs
+ * go through small bounded queues, so memory use depends on the number of
+ * threads, not on the number of images.
+ */
+public class BatchClassifier {
+    private static final String TAG = "BatchClassifier";
+    private static final int QUEUE_SLOTS_PER_THREAD = 2;
+    // Compared by identity to tell the decode workers to stop.
+    private static final String END_OF_NAMES = new String("");
+
+    /** A stream of named images, read one at a time. */
+    public interface Source {
+        /** @return the name of the next image, or null once all were read */
+        String next() throws IOException;
+
+        InputStream open(String name) throws IOException;
+    }
+
+    /** Images in a directory on the device, in name order. */
+    public static final class DirectorySource implements Source {
+        private final File directory;
+        private final String[] names;
+        private int position;
+
+        public DirectorySource(File directory) throws IOException {
+            String[] names = directory.list();
+            if (names == null) {
+                throw new IOException("Cannot list " + directory);
+            }
+            // Only the names are held in memory; images are opened on demand.
+            Arrays.sort(names);
+            this.directory = directory;
+            this.names = names;
+        }
+
+        @Override
+        public String next() {
+            while (position < names.length) {
+                String name = names[position++];
+                if (new File(directory, name).isFile()) {
+                    return name;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public InputStream open(String name) throws IOException {
+            return new FileInputStream(new File(directory, name));
+        }
+    }
+
+    /** Images in a folder of the APK's assets. */
+    public static final class AssetSource implements Source {
+        private final AssetManager assets;
+        private final String path;
+        private final String[] names;
+        private int position;
+
+        public AssetSource(AssetManager assets, String path) throws IOException {
+            this.assets = assets;
+            this.path = path;
+            this.names = assets.list(path);
+        }
+
+        @Override
+        public String next() {
+            return position < names.length ? names[position++] : null;
+        }
+
+        @Override
+        public InputStream open(String name) throws IOException {
+            return assets.open(path.isEmpty() ? name : path + "/" + name);
+        }
+    }
+
+    /** Totals of a finished run. */
+    public static final class Report {
+        private final long images;
+        private final long failures;
+        private final long elapsedNanos;
+
+        Report(long images, long failures, long elapsedNanos) {
+            this.images = images;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getImages() {
+            return images;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public float getImagesPerSecond() {
+            return elapsedNanos == 0 ? 0f : images * 1e9f / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d images, %d failed, %.1f s, %.1f images/s",
+                    images, failures, elapsedNanos / 1e9f,
+                    getImagesPerSecond());
+        }
+    }
+
+    private final Context context;
+    private final ClassifierConfig config;
+    private final int decodeWorkers;
+    private final int classifierInstances;
+
+    /**
+     * @param decodeWorkers       threads decoding and preprocessing images
+     * @param classifierInstances classifier instances running in parallel,
+     *                            each on its own thread with
+     *                            {@code config.getNumThreads()} threads
+     */
+    public BatchClassifier(Context context,
+                           ClassifierConfig config,
+                           int decodeWorkers,
+                           int classifierInstances) {
+        if (decodeWorkers <= 0 || classifierInstances <= 0) {
+            throw new IllegalArgumentException(
+                    "Worker and classifier counts must be positive");
+        }
+        this.context = context.getApplicationContext();
+        this.config = config;
+        this.decodeWorkers = decodeWorkers;
+        this.classifierInstances = classifierInstances;
+    }
+
+    /**
+     * Classifies every image of {@code source} and writes one result per
+     * image to {@code writer}, in completion order. Images that fail to
+     * decode or classify are written as errors and do not stop the run.
+     * Blocks until every image is done.
+     */
+    public Report run(Source source, BatchResultWriter writer)
+            throws IOException, InterruptedException {
+        ModelRegistry registry = ModelRegistry.getInstance(context);
+        ModelRegistry.ModelInfo model = registry.getModel(config.getModel());
+        int[] inputSize = {model.getInputWidth(), model.getInputHeight()};
+        List<ImageClassifier> classifiers = new ArrayList<>();
+        try {
+            for (int i = 0; i < classifierInstances; i++) {
+                // All instances share the one mapped copy of the model.
+                classifiers.add(registry.createClassifier(config));
+            }
+            return run(source, writer, classifiers, inputSize);
+        } finally {
+            for (ImageClassifier classifier : classifiers) {
+                classifier.close();
+            }
+        }
+    }
+
+    private Report run(Source source,
+                       BatchResultWriter writer,
+                       List<ImageClassifier> classifiers,
+                       int[] inputSize) throws IOException, InterruptedException {
+        BlockingQueue<String> names = new ArrayBlockingQueue<>(
+                decodeWorkers * QUEUE_SLOTS_PER_THREAD);
+        BlockingQueue<DecodedImage> decoded = new ArrayBlockingQueue<>(
+                classifiers.size() * QUEUE_SLOTS_PER_THREAD);
+        AtomicLong images = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        AtomicInteger runningDecoders = new AtomicInteger(decodeWorkers);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < decodeWorkers; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    decodeLoop(source, names, decoded, inputSize, writer,
+                            images, failures);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (runningDecoders.decrementAndGet() == 0) {
+                        endClassifyLoops(decoded, classifiers.size());
+                    }
+                }
+            }, TAG + "-decode" + i));
+        }
+        for (int i = 0; i < classifiers.size(); i++) {
+            ImageClassifier classifier = classifiers.get(i);
+            threads.add(new Thread(() -> {
+                try {
+                    classifyLoop(classifier, decoded, writer, images, failures);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, TAG + "-classify" + i));
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        try {
+            String name;
+            while ((name = source.next()) != null) {
+                names.put(name);
+            }
+            for (int i = 0; i < decodeWorkers; i++) {
+                names.put(END_OF_NAMES);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            // An interrupt does not stop a classify call already in native
+            // code, and the classifiers are closed once this returns.
+            joinUninterruptibly(threads);
+            writer.flush();
+        }
+        return new Report(images.get(), failures.get(),
+                System.nanoTime() - start);
+    }
+
+    private static void joinUninterruptibly(List<Thread> threads) {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void decodeLoop(Source source,
+                            BlockingQueue<String> names,
+                            BlockingQueue<DecodedImage> decoded,
+                            int[] inputSize,
+                            BatchResultWriter writer,
+                            AtomicLong images,
+                            AtomicLong failures) throws InterruptedException {
+        String name;
+        while ((name = names.take()) != END_OF_NAMES) {
+            Bitmap bitmap = null;
+            TensorImage tensorImage;
+            try {
+                bitmap = decode(source, name, inputSize[0], inputSize[1]);
+                if (bitmap == null) {
+                    throw new IOException("Cannot decode image");
+                }
+                tensorImage = new TensorImage(DataType.UINT8);
+                tensorImage.load(bitmap);
+            } catch (IOException | RuntimeException e) {
+                // A corrupt or unsupported image must not end this thread,
+                // or the names queue would be left without a consumer.
+                if (bitmap != null) {
+                    bitmap.recycle();
+                }
+                images.incrementAndGet();
+                failures.incrementAndGet();
+                writeError(writer, name, e.getMessage() != null
+                        ? e.getMessage() : "Cannot decode image");
+                continue;
+            }
+            decoded.put(new DecodedImage(name, bitmap, tensorImage));
+        }
+    }
+
+    private static void endClassifyLoops(BlockingQueue<DecodedImage> decoded,
+                                         int count) {
+        try {
+            for (int i = 0; i < count; i++) {
+                decoded.put(DecodedImage.END);
+            }
+        } catch (InterruptedException e) {
+            // The run was aborted and the classifier threads interrupted.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void classifyLoop(ImageClassifier classifier,
+                              BlockingQueue<DecodedImage> decoded,
+                              BatchResultWriter writer,
+                              AtomicLong images,
+                              AtomicLong failures) throws InterruptedException {
+        DecodedImage image;
+        while ((image = decoded.take()) != DecodedImage.END) {
+            try {
+                long start = System.nanoTime();
+                List<Classifications> results =
+                        classifier.classify(image.tensorImage);
+                long micros = (System.nanoTime() - start) / 1000;
+                List<Category> categories = results.isEmpty()
+                        ? new ArrayList<>() : results.get(0).getCategories();
+                writer.writeResult(image.name, categories, micros);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write result for " + image.name, e);
+                failures.incrementAndGet();
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                writeError(writer, image.name, e.getMessage());
+            } finally {
+                images.incrementAndGet();
+                image.bitmap.recycle();
+            }
+        }
+    }
+
+    private static void writeError(BatchResultWriter writer,
+                                   String name,
+                                   String error) {
+        try {
+            writer.writeError(name, error);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write error for " + name, e);
+        }
+    }
+
+    /**
+     * Decodes at the smallest power-of-two subsampling that still covers
+     * the model input, so large photos never occupy full resolution memory.
+     */
+    static Bitmap decode(Source source,
+                         String name,
+                         int targetWidth,
+                         int targetHeight) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = source.open(name)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= targetWidth
+                && options.outHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        try (InputStream in = source.open(name)) {
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+
+    private static final class DecodedImage {
+        static final DecodedImage END = new DecodedImage(null, null, null);
+
+        final String name;
+        final Bitmap bitmap;
+        final TensorImage tensorImage;
+
+        DecodedImage(String name, Bitmap bitmap, TensorImage tensorImage) {
+            this.name = name;
+            this.bitmap = bitmap;
+            this.tensorImage = tensorImage;
+        }
+    }
+}
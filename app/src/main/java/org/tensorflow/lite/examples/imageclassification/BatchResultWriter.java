@@ -0,0 +1,190 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import org.tensorflow.lite.support.label.Category;
+
+/**
+ * Streams batch classification results to a {@link Writer} as they are
+ * produced, one image at a time, so nothing is held in memory. Writes are
+ * serialised, so any number of classifier threads can share one writer.
+ */
+public abstract class BatchResultWriter implements AutoCloseable {
+
+    public enum Format {
+        /** One row per reported category, with a header row. */
+        CSV,
+        /** One JSON object per image. */
+        JSON_LINES
+    }
+
+    protected final Writer out;
+
+    BatchResultWriter(Writer out) {
+        this.out = out;
+    }
+
+    public static BatchResultWriter create(Format format, Writer out)
+            throws IOException {
+        BatchResultWriter writer = format == Format.CSV
+                ? new CsvWriter(out) : new JsonLinesWriter(out);
+        writer.writeHeader();
+        return writer;
+    }
+
+    /** Writes the categories reported for {@code image}, best first. */
+    public final synchronized void writeResult(String image,
+                                               List<Category> categories,
+                                               long inferenceMicros)
+            throws IOException {
+        writeCategories(image, categories, inferenceMicros);
+    }
+
+    /** Records that {@code image} could not be decoded or classified. */
+    public final synchronized void writeError(String image, String error)
+            throws IOException {
+        writeFailure(image, error);
+    }
+
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    abstract void writeHeader() throws IOException;
+
+    abstract void writeCategories(String image,
+                                  List<Category> categories,
+                                  long inferenceMicros) throws IOException;
+
+    abstract void writeFailure(String image, String error) throws IOException;
+
+    static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    static String jsonString(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format(Locale.US, "\\u%04x",
+                                (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static final class CsvWriter extends BatchResultWriter {
+        CsvWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            out.write("image,rank,label,display_name,score,inference_us,error\n");
+        }
+
+        @Override
+        void writeCategories(String image,
+                             List<Category> categories,
+                             long inferenceMicros) throws IOException {
+            String name = csvField(image);
+            if (categories.isEmpty()) {
+                // Nothing passed the score threshold.
+                out.write(name + ",,,,," + inferenceMicros + ",\n");
+                return;
+            }
+            for (int rank = 0; rank < categories.size(); rank++) {
+                Category category = categories.get(rank);
+                out.write(String.format(Locale.US, "%s,%d,%s,%s,%.6f,%d,\n",
+                        name, rank + 1, csvField(category.getLabel()),
+                        csvField(category.getDisplayName()),
+                        category.getScore(), inferenceMicros));
+            }
+        }
+
+        @Override
+        void writeFailure(String image, String error) throws IOException {
+            out.write(csvField(image) + ",,,,,," + csvField(error) + "\n");
+        }
+    }
+
+    private static final class JsonLinesWriter extends BatchResultWriter {
+        JsonLinesWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void writeHeader() {
+            // JSON lines has no header.
+        }
+
+        @Override
+        void writeCategories(String image,
+                             List<Category> categories,
+                             long inferenceMicros) throws IOException {
+            StringBuilder line = new StringBuilder("{\"image\":")
+                    .append(jsonString(image))
+                    .append(",\"inference_us\":").append(inferenceMicros)
+                    .append(",\"categories\":[");
+            for (int i = 0; i < categories.size(); i++) {
+                Category category = categories.get(i);
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append("{\"label\":").append(jsonString(category.getLabel()))
+                        .append(",\"display_name\":")
+                        .append(jsonString(category.getDisplayName()))
+                        .append(",\"score\":")
+                        .append(String.format(Locale.US, "%.6f",
+                                category.getScore()))
+                        .append('}');
+            }
+            out.write(line.append("]}\n").toString());
+        }
+
+        @Override
+        void writeFailure(String image, String error) throws IOException {
+            out.write("{\"image\":" + jsonString(image) + ",\"error\":"
+                    + jsonString(error) + "}\n");
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.tensorflow.lite.gpu.CompatibilityList;
+import org.tensorflow.lite.support.image.TensorImage;
+import org.tensorflow.lite.task.vision.classifier.ImageClassifier;
+
+/**
+ * Benchmarks every supported delegate and thread count on the bundled model
+ * and remembers the fastest one. Profiles are stored per device model and
+ * model file, so a new model or a new phone is tuned again.
+ */
+public class ClassifierAutoTuner {
+    private static final String TAG = "ClassifierAutoTuner";
+    private static final String PREFS_NAME = "classifier_tuning";
+    private static final int MAX_THREADS = 4;
+    private static final int WARMUP_RUNS = 3;
+    // Enough runs for the p95 to be more than just the slowest one.
+    private static final int TIMED_RUNS = 50;
+
+    public interface ProgressListener {
+        void onCandidateMeasured(ClassifierConfig candidate, long p95Micros);
+    }
+
+    /** The configuration picked by a tuning run and its p95 latency. */
+    public static final class Profile {
+        private final int delegate;
+        private final int numThreads;
+        private final long p95Micros;
+
+        Profile(int delegate, int numThreads, long p95Micros) {
+            this.delegate = delegate;
+            this.numThreads = numThreads;
+            this.p95Micros = p95Micros;
+        }
+
+        public int getDelegate() {
+            return delegate;
+        }
+
+        public int getNumThreads() {
+            return numThreads;
+        }
+
+        public long getP95Micros() {
+            return p95Micros;
+        }
+
+        public ClassifierConfig applyTo(ClassifierConfig config) {
+            return config.withDelegate(delegate).withNumThreads(numThreads);
+        }
+    }
+
+    private final Context context;
+    private final SharedPreferences preferences;
+
+    public ClassifierAutoTuner(Context context) {
+        this.context = context.getApplicationContext();
+        this.preferences = this.context
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the profile stored for this device and model, or null if the
+     * combination has not been tuned yet. Reads the model file, so it should
+     * not be called on the main thread.
+     */
+    @Nullable
+    public Profile loadProfile(int model) throws IOException {
+        String stored = preferences.getString(profileKey(model), null);
+        if (stored == null) {
+            return null;
+        }
+        String[] parts = stored.split(",");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new Profile(Integer.parseInt(parts[0]),
+                    Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Measures every supported delegate and thread count for the model in
+     * {@code baseConfig}, stores the one with the lowest p95 latency and
+     * returns it. The GPU is only tried where the GPU delegate supports the
+     * device. NNAPI is tried on every device from API 27 on, accelerator or
+     * not; without one it runs on the NNAPI CPU implementation and is kept
+     * only if that still beats the CPU thread counts. Blocks for several
+     * seconds; call it from a background thread, with live classification
+     * paused so it does not compete with the candidates.
+     */
+    @Nullable
+    public Profile tune(ClassifierConfig baseConfig,
+                        @Nullable ProgressListener listener) throws IOException {
+        ModelRegistry.ModelInfo model = ModelRegistry.getInstance(context)
+                .getModel(baseConfig.getModel());
+        String modelName = model.getFileName();
+        TensorImage frame = ImageClassifierHelper.syntheticFrame(
+                model.getInputWidth(), model.getInputHeight());
+
+        Profile best = null;
+        for (ClassifierConfig candidate : candidates(baseConfig)) {
+            long p95Micros;
+            try {
+                p95Micros = measure(candidate, frame);
+            } catch (IOException | RuntimeException e) {
+                // A delegate can still fail on models it does not support.
+                Log.w(TAG, "Skipping " + candidate + ": " + e.getMessage());
+                continue;
+            }
+            if (listener != null) {
+                listener.onCandidateMeasured(candidate, p95Micros);
+            }
+            if (best == null || p95Micros < best.p95Micros) {
+                best = new Profile(candidate.getDelegate(),
+                        candidate.getNumThreads(), p95Micros);
+            }
+        }
+        if (best != null) {
+            preferences.edit()
+                    .putString(profileKey(baseConfig.getModel()),
+                            best.delegate + "," + best.numThreads + ","
+                                    + best.p95Micros)
+                    .apply();
+            Log.i(TAG, String.format(Locale.US,
+                    "Tuned %s: delegate %d, %d threads, p95 %d us",
+                    modelName, best.delegate, best.numThreads, best.p95Micros));
+        }
+        return best;
+    }
+
+    private List<ClassifierConfig> candidates(ClassifierConfig baseConfig) {
+        List<Integer> delegates = new ArrayList<>();
+        delegates.add(ImageClassifierHelper.DELEGATE_CPU);
+        if (new CompatibilityList().isDelegateSupportedOnThisDevice()) {
+            delegates.add(ImageClassifierHelper.DELEGATE_GPU);
+        }
+        // The Task Library cannot keep NNAPI off its CPU implementation nor
+        // tell what it delegated, so NNAPI is measured like any candidate.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            delegates.add(ImageClassifierHelper.DELEGATE_NNAPI);
+        }
+        int maxThreads = Math.min(MAX_THREADS,
+                Runtime.getRuntime().availableProcessors());
+
+        List<ClassifierConfig> candidates = new ArrayList<>();
+        for (int delegate : delegates) {
+            // Thread count only matters for kernels that run on the CPU.
+            int threads = delegate == ImageClassifierHelper.DELEGATE_CPU
+                    ? maxThreads : 1;
+            for (int numThreads = 1; numThreads <= threads; numThreads++) {
+                candidates.add(baseConfig.withDelegate(delegate)
+                        .withNumThreads(numThreads));
+            }
+        }
+        return candidates;
+    }
+
+    private long measure(ClassifierConfig candidate,
+                         TensorImage frame) throws IOException {
+        ImageClassifier classifier =
+                ModelRegistry.getInstance(context).createClassifier(candidate);
+        try {
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                classifier.classify(frame);
+            }
+            long[] latencies = new long[TIMED_RUNS];
+            for (int i = 0; i < TIMED_RUNS; i++) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                classifier.classify(frame);
+                latencies[i] = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+            }
+            return percentile(latencies, 0.95);
+        } finally {
+            classifier.close();
+        }
+    }
+
+    static long percentile(long[] values, double fraction) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private String profileKey(int model) throws IOException {
+        return Build.MANUFACTURER + "/" + Build.MODEL + "/"
+                + modelHash(ModelRegistry.getInstance(context).getModel(model));
+    }
+
+    private String modelHash(ModelRegistry.ModelInfo model) throws IOException {
+        MappedByteBuffer buffer =
+                ModelRegistry.getInstance(context).getModelBuffer(model);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // Hash a duplicate so the shared buffer's position is untouched.
+            digest.update(buffer.duplicate());
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format(Locale.US, "%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+}
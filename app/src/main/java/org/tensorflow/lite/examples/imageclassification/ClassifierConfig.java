@@ -0,0 +1,142 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+/**
+ * Immutable set of options an {@link ImageClassifierHelper} builds its
+ * classifier from. Every change produces a new instance, so a config can be
+ * handed to a background thread without further synchronisation.
+ */
+public final class ClassifierConfig {
+    private final float threshold;
+    private final int numThreads;
+    private final int maxResults;
+    private final int delegate;
+    private final int model;
+    private final int poolSize;
+
+    public ClassifierConfig(float threshold,
+                            int numThreads,
+                            int maxResults,
+                            int delegate,
+                            int model) {
+        this(threshold, numThreads, maxResults, delegate, model, 1);
+    }
+
+    /**
+     * @param poolSize number of classifier instances that classify
+     *                 consecutive frames at the same time, each with
+     *                 {@code numThreads} threads
+     */
+    public ClassifierConfig(float threshold,
+                            int numThreads,
+                            int maxResults,
+                            int delegate,
+                            int model,
+                            int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.threshold = threshold;
+        this.numThreads = numThreads;
+        this.maxResults = maxResults;
+        this.delegate = delegate;
+        this.model = model;
+        this.poolSize = poolSize;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    public int getDelegate() {
+        return delegate;
+    }
+
+    public int getModel() {
+        return model;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /** The config each instance of the pool is built from. */
+    public ClassifierConfig forInstance() {
+        return poolSize == 1 ? this : withPoolSize(1);
+    }
+
+    public ClassifierConfig withThreshold(float threshold) {
+        return new ClassifierConfig(threshold, numThreads, maxResults, delegate,
+                model, poolSize);
+    }
+
+    public ClassifierConfig withNumThreads(int numThreads) {
+        return new ClassifierConfig(threshold, numThreads, maxResults, delegate,
+                model, poolSize);
+    }
+
+    public ClassifierConfig withMaxResults(int maxResults) {
+        return new ClassifierConfig(threshold, numThreads, maxResults, delegate,
+                model, poolSize);
+    }
+
+    public ClassifierConfig withDelegate(int delegate) {
+        return new ClassifierConfig(threshold, numThreads, maxResults, delegate,
+                model, poolSize);
+    }
+
+    public ClassifierConfig withModel(int model) {
+        return new ClassifierConfig(threshold, numThreads, maxResults, delegate,
+                model, poolSize);
+    }
+
+    public ClassifierConfig withPoolSize(int poolSize) {
+        return new ClassifierConfig(threshold, numThreads, maxResults, delegate,
+                model, poolSize);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ClassifierConfig)) {
+            return false;
+        }
+        ClassifierConfig other = (ClassifierConfig) o;
+        return Float.compare(threshold, other.threshold) == 0
+                && numThreads == other.numThreads
+                && maxResults == other.maxResults
+                && delegate == other.delegate
+                && model == other.model
+                && poolSize == other.poolSize;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(threshold);
+        result = 31 * result + numThreads;
+        result = 31 * result + maxResults;
+        result = 31 * result + delegate;
+        result = 31 * result + model;
+        result = 31 * result + poolSize;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ClassifierConfig{threshold=" + threshold
+                + ", numThreads=" + numThreads
+                + ", maxResults=" + maxResults
+                + ", delegate=" + delegate
+                + ", model=" + model
+                + ", poolSize=" + poolSize + "}";
+    }
+}
@@ -0,0 +1,239 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Owns the classifier that serves frames through its whole life: while the
+ * first one is built, while it serves, while a replacement is built for a new
+ * configuration, and while the owner shuts down. Every transition is a single
+ * compare-and-set, so no thread ever waits for another.
+ *
+ * <p>Inferences {@link #acquire} a {@link Lease} on the current classifier.
+ * A classifier that is replaced or closed stays alive until its last lease is
+ * released, and is then handed to the {@link Disposer} exactly once, on the
+ * thread that released it.
+ */
+public class ClassifierLifecycle<T> {
+
+    public enum State {
+        /** No classifier, and none being built. */
+        IDLE,
+        /** The first classifier is being built. */
+        BUILDING,
+        /** A classifier is serving. */
+        READY,
+        /** A classifier is serving while its replacement is being built. */
+        RECONFIGURING,
+        /** Shut down; classifiers still leased are disposed once released. */
+        CLOSING
+    }
+
+    public interface Disposer<T> {
+        /** Frees {@code classifier}, which nothing uses any more. */
+        void dispose(T classifier);
+    }
+
+    private final Disposer<T> disposer;
+    private final AtomicReference<Status<T>> status =
+            new AtomicReference<>(new Status<T>(State.IDLE, null));
+    private final AtomicInteger activeLeases = new AtomicInteger();
+
+    public ClassifierLifecycle(Disposer<T> disposer) {
+        this.disposer = disposer;
+    }
+
+    public State getState() {
+        return status.get().state;
+    }
+
+    /** Leases acquired and not yet released, across all classifiers. */
+    public int getActiveLeaseCount() {
+        return activeLeases.get();
+    }
+
+    /**
+     * The serving classifier, or null, without leasing it. Only for reading
+     * what it was built for; running it needs a lease.
+     */
+    public T peek() {
+        Lease<T> lease = status.get().lease;
+        return lease != null ? lease.classifier : null;
+    }
+
+    /**
+     * Leases the serving classifier, which stays usable until the lease is
+     * released even if it is replaced or closed in the meantime.
+     *
+     * @return the lease, or null if no classifier is serving
+     */
+    public Lease<T> acquire() {
+        while (true) {
+            Lease<T> lease = status.get().lease;
+            if (lease == null) {
+                return null;
+            }
+            if (lease.retain()) {
+                return lease;
+            }
+            // Replaced and released since it was read; the status has moved
+            // on, so the next read sees its successor.
+        }
+    }
+
+    /**
+     * Claims the right to build a classifier: from {@link State#IDLE} to
+     * {@link State#BUILDING}, or from {@link State#READY} to
+     * {@link State#RECONFIGURING}.
+     *
+     * @return false if a build is already running or the lifecycle is closing
+     */
+    public boolean beginBuild() {
+        while (true) {
+            Status<T> current = status.get();
+            State next;
+            if (current.state == State.IDLE) {
+                next = State.BUILDING;
+            } else if (current.state == State.READY) {
+                next = State.RECONFIGURING;
+            } else {
+                return false;
+            }
+            if (status.compareAndSet(current,
+                    new Status<>(next, current.lease))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a build claimed with {@link #beginBuild} by serving
+     * {@code classifier}. The classifier it replaces is disposed once its
+     * last lease is released. If the lifecycle was closed during the build,
+     * {@code classifier} is disposed right away instead.
+     *
+     * @return true if {@code classifier} is now serving
+     */
+    public boolean publish(T classifier) {
+        Lease<T> lease = new Lease<>(this, classifier);
+        while (true) {
+            Status<T> current = status.get();
+            if (current.state == State.CLOSING) {
+                disposer.dispose(classifier);
+                return false;
+            }
+            checkBuilding(current.state);
+            if (status.compareAndSet(current,
+                    new Status<>(State.READY, lease))) {
+                if (current.lease != null) {
+                    current.lease.drop();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a build claimed with {@link #beginBuild} without a new classifier,
+     * because it failed or was not needed after all.
+     */
+    public void cancelBuild() {
+        while (true) {
+            Status<T> current = status.get();
+            if (current.state == State.CLOSING) {
+                return;
+            }
+            checkBuilding(current.state);
+            State next = current.lease != null ? State.READY : State.IDLE;
+            if (status.compareAndSet(current,
+                    new Status<>(next, current.lease))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves to {@link State#CLOSING} for good. The serving classifier is
+     * disposed now if it is not leased, or else by whichever inference
+     * releases it last; a build still running disposes its result when it
+     * publishes.
+     *
+     * @return false if the lifecycle was already closing
+     */
+    public boolean close() {
+        while (true) {
+            Status<T> current = status.get();
+            if (current.state == State.CLOSING) {
+                return false;
+            }
+            if (status.compareAndSet(current,
+                    new Status<T>(State.CLOSING, null))) {
+                if (current.lease != null) {
+                    current.lease.drop();
+                }
+                return true;
+            }
+        }
+    }
+
+    private static void checkBuilding(State state) {
+        if (state != State.BUILDING && state != State.RECONFIGURING) {
+            throw new IllegalStateException("No build in progress: " + state);
+        }
+    }
+
+    /**
+     * One reference to a classifier. The lifecycle holds a reference of its
+     * own while the classifier serves, so the count only reaches zero once
+     * it is replaced or closed and every inference has released it.
+     */
+    public static final class Lease<T> {
+        private final ClassifierLifecycle<T> lifecycle;
+        private final T classifier;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Lease(ClassifierLifecycle<T> lifecycle, T classifier) {
+            this.lifecycle = lifecycle;
+            this.classifier = classifier;
+        }
+
+        public T get() {
+            return classifier;
+        }
+
+        /** Must be called exactly once per {@link #acquire}. */
+        public void release() {
+            lifecycle.activeLeases.decrementAndGet();
+            drop();
+        }
+
+        private boolean retain() {
+            while (true) {
+                int count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    lifecycle.activeLeases.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        private void drop() {
+            if (references.decrementAndGet() == 0) {
+                lifecycle.disposer.dispose(classifier);
+            }
+        }
+    }
+
+    private static final class Status<T> {
+        final State state;
+        final Lease<T> lease;
+
+        Status(State state, Lease<T> lease) {
+            this.state = state;
+            this.lease = lease;
+        }
+    }
+}
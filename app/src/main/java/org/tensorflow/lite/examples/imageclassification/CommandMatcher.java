@@ -0,0 +1,191 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds spoken commands in recognized text. Text and phrases are normalized
+ * to lower case words without accents or punctuation, and a phrase matches
+ * a run of words of the text word by word. Short words must match exactly;
+ * longer ones may have a few letters misheard, so near misses of the
+ * recognizer such as "stark" for "start" still count. A phrase that follows
+ * a negation, as in "no, let's not start", does not count.
+ */
+public class CommandMatcher<T> {
+    public static final float DEFAULT_MIN_SIMILARITY = 0.75f;
+    // Shorter words are too easily confused with other words, such as "yes"
+    // and "yet", to allow any difference.
+    static final int MIN_FUZZY_WORD_LENGTH = 5;
+    private static final Set<String> NEGATIONS = new HashSet<>(Arrays.asList(
+            "no", "not", "nope", "never", "dont", "cant", "cannot", "wont"));
+
+    private final List<Phrase<T>> phrases = new ArrayList<>();
+    private final float minSimilarity;
+
+    public CommandMatcher() {
+        this(DEFAULT_MIN_SIMILARITY);
+    }
+
+    /**
+     * @param minSimilarity lowest similarity, from 0 to 1, at which a word
+     *                      counts as spoken; 1 only accepts exact words
+     */
+    public CommandMatcher(float minSimilarity) {
+        if (minSimilarity <= 0f || minSimilarity > 1f) {
+            throw new IllegalArgumentException(
+                    "Similarity must be in (0, 1]");
+        }
+        this.minSimilarity = minSimilarity;
+    }
+
+    /** Adds phrases that all stand for {@code command}. */
+    public CommandMatcher<T> add(T command, String... phrases) {
+        for (String phrase : phrases) {
+            List<String> words = words(phrase);
+            if (words.isEmpty()) {
+                throw new IllegalArgumentException(
+                        "Phrase has no words: " + phrase);
+            }
+            this.phrases.add(new Phrase<>(command, phrase, words));
+        }
+        return this;
+    }
+
+    /** A phrase found in the text, and how closely it was matched. */
+    public static final class Match<T> {
+        private final T command;
+        private final String phrase;
+        private final float similarity;
+
+        Match(T command, String phrase, float similarity) {
+            this.command = command;
+            this.phrase = phrase;
+            this.similarity = similarity;
+        }
+
+        public T getCommand() {
+            return command;
+        }
+
+        public String getPhrase() {
+            return phrase;
+        }
+
+        /** 1 for an exact match, lower for near misses. */
+        public float getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public String toString() {
+            return command + " (\"" + phrase + "\", "
+                    + String.format(Locale.US, "%.2f", similarity) + ")";
+        }
+    }
+
+    /**
+     * The best matching command in any of {@code hypotheses}, or null if no
+     * phrase is similar enough.
+     */
+    public Match<T> match(List<String> hypotheses) {
+        Match<T> best = null;
+        for (String hypothesis : hypotheses) {
+            Match<T> match = match(hypothesis);
+            if (match != null
+                    && (best == null || match.similarity > best.similarity)) {
+                best = match;
+            }
+        }
+        return best;
+    }
+
+    /** The best matching command in {@code text}, or null. */
+    public Match<T> match(String text) {
+        List<String> words = words(text);
+        // Phrases after a negation are not meant as commands.
+        int firstNegation = 0;
+        while (firstNegation < words.size()
+                && !NEGATIONS.contains(words.get(firstNegation))) {
+            firstNegation++;
+        }
+        Match<T> best = null;
+        for (Phrase<T> phrase : phrases) {
+            int lastStart = Math.min(firstNegation,
+                    words.size() - phrase.words.size());
+            for (int start = 0; start <= lastStart; start++) {
+                float similarity = similarity(phrase.words, words, start);
+                if (similarity >= minSimilarity
+                        && (best == null || similarity > best.similarity)) {
+                    best = new Match<>(phrase.command, phrase.text,
+                            similarity);
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Lower case words of {@code text}, without accents or punctuation. */
+    static List<String> words(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                // "Let's" and "Let\u2019s" both become "lets".
+                .replaceAll("['\u2019]", "")
+                .replaceAll("[^\\p{L}\\p{N}]+", " ")
+                .toLowerCase(Locale.ROOT)
+                .trim();
+        return normalized.isEmpty() ? Collections.<String>emptyList()
+                : Arrays.asList(normalized.split(" "));
+    }
+
+    // 1 minus the fraction of misheard letters of the phrase, compared with
+    // the words of text from start on, or 0 if any word is too different.
+    // Misheard letters are only allowed in place: a dropped or added letter
+    // often makes another word, such as "star" for "start".
+    private float similarity(List<String> phrase,
+                             List<String> text,
+                             int start) {
+        int letters = 0;
+        int misheard = 0;
+        for (int i = 0; i < phrase.size(); i++) {
+            String expected = phrase.get(i);
+            String heard = text.get(start + i);
+            letters += expected.length();
+            if (expected.equals(heard)) {
+                continue;
+            }
+            if (expected.length() < MIN_FUZZY_WORD_LENGTH
+                    || heard.length() != expected.length()) {
+                return 0f;
+            }
+            int differences = 0;
+            for (int j = 0; j < expected.length(); j++) {
+                if (expected.charAt(j) != heard.charAt(j)) {
+                    differences++;
+                }
+            }
+            if (1f - (float) differences / expected.length() < minSimilarity) {
+                return 0f;
+            }
+            misheard += differences;
+        }
+        return 1f - (float) misheard / letters;
+    }
+
+    private static final class Phrase<T> {
+        final T command;
+        final String text;
+        final List<String> words;
+
+        Phrase(T command, String text, List<String> words) {
+            this.command = command;
+            this.text = text;
+            this.words = words;
+        }
+    }
+}
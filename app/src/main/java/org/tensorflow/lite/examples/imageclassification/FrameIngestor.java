@@ -0,0 +1,424 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Converts an RGBA_8888 or YUV_420_888 camera frame straight into an RGB
+ * buffer at the model input resolution. Cropping to the
+ * {@link RegionOfInterest}, rotation and a bilinear resize are applied while
+ * reading, so only the four source pixels around each output pixel are
+ * touched and no intermediate full resolution copy is made. The resize
+ * matches {@link RotateResizeKernel}, so camera frames and still images are
+ * preprocessed alike. The source offsets and weights are computed once per
+ * rotation, region and frame geometry and reused. YUV frames are converted
+ * to RGB only for the sampled pixels, in the same pass.
+ */
+public class FrameIngestor {
+    private static final int RGB_CHANNELS = 3;
+    // Fixed point BT.601 full range coefficients, scaled by 2^16, as used by
+    // camera YUV_420_888 (JFIF) frames.
+    private static final int V_TO_R = 91881;
+    private static final int U_TO_G = 22554;
+    private static final int V_TO_G = 46802;
+    private static final int U_TO_B = 116130;
+    private static final int ROUNDING = 1 << 15;
+    // Bilinear weights in fixed point, as in RotateResizeKernel.
+    private static final int WEIGHT_BITS = 8;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+    private static final int BLEND_ROUNDING = 1 << (2 * WEIGHT_BITS - 1);
+
+    private final int outputWidth;
+    private final int outputHeight;
+    private final ByteBuffer outputBuffer;
+
+    // One cached sampling table per rotation (0, 90, 180, 270) and format.
+    private final SamplingPlan[] samplingPlans = new SamplingPlan[4];
+    private final SamplingPlan[] yuvSamplingPlans = new SamplingPlan[4];
+    private RegionOfInterest regionOfInterest = RegionOfInterest.FULL_FRAME;
+    private long allocationCount;
+
+    public FrameIngestor(int outputWidth, int outputHeight) {
+        if (outputWidth <= 0 || outputHeight <= 0) {
+            throw new IllegalArgumentException("Output size must be positive");
+        }
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+        this.outputBuffer = ByteBuffer
+                .allocateDirect(outputWidth * outputHeight * RGB_CHANNELS)
+                .order(ByteOrder.nativeOrder());
+        this.allocationCount = 1;
+    }
+
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    /** The RGB buffer filled by the last {@link #ingest} call, rewound. */
+    public ByteBuffer getOutputBuffer() {
+        outputBuffer.rewind();
+        return outputBuffer;
+    }
+
+    public RegionOfInterest getRegionOfInterest() {
+        return regionOfInterest;
+    }
+
+    /**
+     * Sets the region of the upright frame that is scaled to the output.
+     * Only the pixels inside it are read, so a smaller region is sampled at a
+     * higher effective resolution. Changing it rebuilds the sampling tables.
+     */
+    public void setRegionOfInterest(RegionOfInterest regionOfInterest) {
+        this.regionOfInterest = regionOfInterest;
+    }
+
+    /**
+     * Number of buffers and sampling tables allocated so far. It stops growing
+     * once every rotation in use has been seen for the current frame geometry
+     * and region of interest, which makes steady-state ingestion allocation
+     * free.
+     */
+    public long getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * Reads {@code plane} and writes the region of interest of the upright
+     * image, downscaled to RGB, into the reusable output buffer.
+     *
+     * @param plane           RGBA_8888 pixels, as handed out by the camera.
+     *                        Its position and limit are left untouched.
+     * @param width           width of the source image in pixels
+     * @param height          height of the source image in pixels
+     * @param rowStride       distance in bytes between the starts of two rows
+     * @param pixelStride     distance in bytes between two pixels of a row
+     * @param rotationDegrees clockwise rotation that makes the image upright,
+     *                        one of 0, 90, 180 or 270
+     * @return the output buffer, rewound and ready to be read
+     */
+    public ByteBuffer ingest(ByteBuffer plane,
+                             int width,
+                             int height,
+                             int rowStride,
+                             int pixelStride,
+                             int rotationDegrees) {
+        return ingest(plane, width, height, rowStride, pixelStride,
+                rotationDegrees, outputBuffer);
+    }
+
+    /**
+     * Same as {@link #ingest(ByteBuffer, int, int, int, int, int)} but writes
+     * into {@code outputBuffer}, which must hold at least
+     * {@code outputWidth * outputHeight * 3} bytes.
+     */
+    public ByteBuffer ingest(ByteBuffer plane,
+                             int width,
+                             int height,
+                             int rowStride,
+                             int pixelStride,
+                             int rotationDegrees,
+                             ByteBuffer outputBuffer) {
+        SamplingPlan plan = samplingPlan(samplingPlans, width, height,
+                rowStride, pixelStride, 0, 0, rotationDegrees);
+        int out = 0;
+        for (int oy = 0; oy < outputHeight; oy++) {
+            int row0 = plan.rowOffsets0[oy];
+            int row1 = plan.rowOffsets1[oy];
+            int wy = plan.rowWeights[oy];
+            for (int ox = 0; ox < outputWidth; ox++) {
+                int column0 = plan.columnOffsets0[ox];
+                int column1 = plan.columnOffsets1[ox];
+                int wx = plan.columnWeights[ox];
+                for (int channel = 0; channel < RGB_CHANNELS; channel++) {
+                    int top = (plane.get(row0 + column0 + channel) & 0xFF)
+                            * (WEIGHT_ONE - wx)
+                            + (plane.get(row0 + column1 + channel) & 0xFF) * wx;
+                    int bottom = (plane.get(row1 + column0 + channel) & 0xFF)
+                            * (WEIGHT_ONE - wx)
+                            + (plane.get(row1 + column1 + channel) & 0xFF) * wx;
+                    outputBuffer.put(out++, blend(top, bottom, wy));
+                }
+            }
+        }
+        outputBuffer.rewind();
+        return outputBuffer;
+    }
+
+    /**
+     * Reads a YUV_420_888 frame and writes the region of interest of the
+     * upright image, downscaled to RGB, into {@code outputBuffer}. Colour
+     * conversion happens only for the pixels that are sampled, so the
+     * full resolution frame is never converted.
+     *
+     * @param yPlane          luma plane, one byte per pixel
+     * @param uPlane          Cb plane, subsampled by two in both directions
+     * @param vPlane          Cr plane, with the same strides as {@code uPlane}
+     * @param yRowStride      distance in bytes between two rows of luma
+     * @param uvRowStride     distance in bytes between two rows of chroma
+     * @param uvPixelStride   distance in bytes between two chroma samples of
+     *                        a row: 1 for planar, 2 for semi-planar frames
+     * @param rotationDegrees clockwise rotation that makes the image upright,
+     *                        one of 0, 90, 180 or 270
+     * @return the output buffer, rewound and ready to be read
+     */
+    public ByteBuffer ingestYuv(ByteBuffer yPlane,
+                                ByteBuffer uPlane,
+                                ByteBuffer vPlane,
+                                int width,
+                                int height,
+                                int yRowStride,
+                                int uvRowStride,
+                                int uvPixelStride,
+                                int rotationDegrees,
+                                ByteBuffer outputBuffer) {
+        SamplingPlan plan = samplingPlan(yuvSamplingPlans, width, height,
+                yRowStride, 1, uvRowStride, uvPixelStride, rotationDegrees);
+        int out = 0;
+        for (int oy = 0; oy < outputHeight; oy++) {
+            int row0 = plan.rowOffsets0[oy];
+            int row1 = plan.rowOffsets1[oy];
+            int chromaRow0 = plan.chromaRowOffsets0[oy];
+            int chromaRow1 = plan.chromaRowOffsets1[oy];
+            int wy = plan.rowWeights[oy];
+            for (int ox = 0; ox < outputWidth; ox++) {
+                int column0 = plan.columnOffsets0[ox];
+                int column1 = plan.columnOffsets1[ox];
+                int chromaColumn0 = plan.chromaColumnOffsets0[ox];
+                int chromaColumn1 = plan.chromaColumnOffsets1[ox];
+                int wx = plan.columnWeights[ox];
+                // The corners are converted before they are blended, as if
+                // the whole frame had been converted to RGB first.
+                int p00 = yuvToRgb(yPlane, uPlane, vPlane, row0 + column0,
+                        chromaRow0 + chromaColumn0);
+                int p01 = yuvToRgb(yPlane, uPlane, vPlane, row0 + column1,
+                        chromaRow0 + chromaColumn1);
+                int p10 = yuvToRgb(yPlane, uPlane, vPlane, row1 + column0,
+                        chromaRow1 + chromaColumn0);
+                int p11 = yuvToRgb(yPlane, uPlane, vPlane, row1 + column1,
+                        chromaRow1 + chromaColumn1);
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    int top = ((p00 >> shift) & 0xFF) * (WEIGHT_ONE - wx)
+                            + ((p01 >> shift) & 0xFF) * wx;
+                    int bottom = ((p10 >> shift) & 0xFF) * (WEIGHT_ONE - wx)
+                            + ((p11 >> shift) & 0xFF) * wx;
+                    outputBuffer.put(out++, blend(top, bottom, wy));
+                }
+            }
+        }
+        outputBuffer.rewind();
+        return outputBuffer;
+    }
+
+    private static byte blend(int top, int bottom, int wy) {
+        return (byte) ((top * (WEIGHT_ONE - wy) + bottom * wy
+                + BLEND_ROUNDING) >> (2 * WEIGHT_BITS));
+    }
+
+    // One pixel of a YUV_420_888 frame as 0xRRGGBB.
+    private static int yuvToRgb(ByteBuffer yPlane,
+                                ByteBuffer uPlane,
+                                ByteBuffer vPlane,
+                                int lumaOffset,
+                                int chromaOffset) {
+        int y = ((yPlane.get(lumaOffset) & 0xFF) << 16) + ROUNDING;
+        int u = (uPlane.get(chromaOffset) & 0xFF) - 128;
+        int v = (vPlane.get(chromaOffset) & 0xFF) - 128;
+        return (clamp((y + V_TO_R * v) >> 16) << 16)
+                | (clamp((y - U_TO_G * u - V_TO_G * v) >> 16) << 8)
+                | clamp((y + U_TO_B * u) >> 16);
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+
+    private SamplingPlan samplingPlan(SamplingPlan[] plans,
+                                      int width,
+                                      int height,
+                                      int rowStride,
+                                      int pixelStride,
+                                      int chromaRowStride,
+                                      int chromaPixelStride,
+                                      int rotationDegrees) {
+        int slot = (rotationDegrees / 90) & 3;
+        SamplingPlan plan = plans[slot];
+        if (plan == null || !plan.matches(width, height, rowStride, pixelStride,
+                chromaRowStride, chromaPixelStride, regionOfInterest)) {
+            plan = new SamplingPlan(width, height, rowStride, pixelStride,
+                    chromaRowStride, chromaPixelStride, rotationDegrees,
+                    regionOfInterest, outputWidth, outputHeight);
+            plans[slot] = plan;
+            allocationCount++;
+        }
+        return plan;
+    }
+
+    private static final class SamplingPlan {
+        final int width;
+        final int height;
+        final int rowStride;
+        final int pixelStride;
+        final int chromaRowStride;
+        final int chromaPixelStride;
+        final RegionOfInterest region;
+        // The source offset of an upright pixel is the sum of a term that
+        // depends only on its column and one that depends only on its row,
+        // kept for the two source columns and rows around each output pixel.
+        final int[] columnOffsets0;
+        final int[] columnOffsets1;
+        final int[] columnWeights;
+        final int[] rowOffsets0;
+        final int[] rowOffsets1;
+        final int[] rowWeights;
+        // The same terms in the chroma planes; null for RGBA frames.
+        final int[] chromaColumnOffsets0;
+        final int[] chromaColumnOffsets1;
+        final int[] chromaRowOffsets0;
+        final int[] chromaRowOffsets1;
+
+        SamplingPlan(int width,
+                     int height,
+                     int rowStride,
+                     int pixelStride,
+                     int chromaRowStride,
+                     int chromaPixelStride,
+                     int rotationDegrees,
+                     RegionOfInterest region,
+                     int outputWidth,
+                     int outputHeight) {
+            this.width = width;
+            this.height = height;
+            this.rowStride = rowStride;
+            this.pixelStride = pixelStride;
+            this.chromaRowStride = chromaRowStride;
+            this.chromaPixelStride = chromaPixelStride;
+            this.region = region;
+
+            boolean transposed = rotationDegrees == 90
+                    || rotationDegrees == 270;
+            int uprightWidth = transposed ? height : width;
+            int uprightHeight = transposed ? width : height;
+            // The region in upright pixels, at least one pixel in each
+            // direction.
+            int cropLeft = Math.min(uprightWidth - 1,
+                    Math.round(region.getLeft() * uprightWidth));
+            int cropTop = Math.min(uprightHeight - 1,
+                    Math.round(region.getTop() * uprightHeight));
+            int cropWidth = Math.max(1,
+                    Math.round(region.getRight() * uprightWidth) - cropLeft);
+            int cropHeight = Math.max(1,
+                    Math.round(region.getBottom() * uprightHeight) - cropTop);
+
+            boolean yuv = chromaRowStride != 0;
+            columnOffsets0 = new int[outputWidth];
+            columnOffsets1 = new int[outputWidth];
+            columnWeights = new int[outputWidth];
+            chromaColumnOffsets0 = yuv ? new int[outputWidth] : null;
+            chromaColumnOffsets1 = yuv ? new int[outputWidth] : null;
+            for (int ox = 0; ox < outputWidth; ox++) {
+                float x = sourceCoordinate(ox, outputWidth, cropWidth);
+                int x0 = (int) x;
+                int x1 = Math.min(x0 + 1, cropWidth - 1);
+                columnWeights[ox] = Math.round((x - x0) * WEIGHT_ONE);
+                columnOffsets0[ox] = offsetTerm(cropLeft + x0, false,
+                        rotationDegrees, rowStride, pixelStride, 1);
+                columnOffsets1[ox] = offsetTerm(cropLeft + x1, false,
+                        rotationDegrees, rowStride, pixelStride, 1);
+                if (yuv) {
+                    chromaColumnOffsets0[ox] = offsetTerm(cropLeft + x0, false,
+                            rotationDegrees, chromaRowStride,
+                            chromaPixelStride, 2);
+                    chromaColumnOffsets1[ox] = offsetTerm(cropLeft + x1, false,
+                            rotationDegrees, chromaRowStride,
+                            chromaPixelStride, 2);
+                }
+            }
+            rowOffsets0 = new int[outputHeight];
+            rowOffsets1 = new int[outputHeight];
+            rowWeights = new int[outputHeight];
+            chromaRowOffsets0 = yuv ? new int[outputHeight] : null;
+            chromaRowOffsets1 = yuv ? new int[outputHeight] : null;
+            for (int oy = 0; oy < outputHeight; oy++) {
+                float y = sourceCoordinate(oy, outputHeight, cropHeight);
+                int y0 = (int) y;
+                int y1 = Math.min(y0 + 1, cropHeight - 1);
+                rowWeights[oy] = Math.round((y - y0) * WEIGHT_ONE);
+                rowOffsets0[oy] = offsetTerm(cropTop + y0, true,
+                        rotationDegrees, rowStride, pixelStride, 1);
+                rowOffsets1[oy] = offsetTerm(cropTop + y1, true,
+                        rotationDegrees, rowStride, pixelStride, 1);
+                if (yuv) {
+                    chromaRowOffsets0[oy] = offsetTerm(cropTop + y0, true,
+                            rotationDegrees, chromaRowStride,
+                            chromaPixelStride, 2);
+                    chromaRowOffsets1[oy] = offsetTerm(cropTop + y1, true,
+                            rotationDegrees, chromaRowStride,
+                            chromaPixelStride, 2);
+                }
+            }
+        }
+
+        // Aligns pixel centres, like a half-pixel-centre bilinear resize.
+        private static float sourceCoordinate(int output,
+                                              int outputSize,
+                                              int sourceSize) {
+            float coordinate =
+                    (output + 0.5f) * sourceSize / outputSize - 0.5f;
+            return Math.max(0f, Math.min(sourceSize - 1, coordinate));
+        }
+
+        // Offset term of an upright column, or row, in a plane with the
+        // given strides and subsampled by subsampling in both directions.
+        private int offsetTerm(int coordinate,
+                               boolean row,
+                               int rotationDegrees,
+                               int planeRowStride,
+                               int planePixelStride,
+                               int subsampling) {
+            // Whether the upright axis runs along the source rows, and the
+            // source coordinate on it.
+            boolean vertical;
+            int source;
+            switch (rotationDegrees) {
+                case 90:
+                    vertical = !row;
+                    source = row ? coordinate : height - 1 - coordinate;
+                    break;
+                case 180:
+                    vertical = row;
+                    source = (row ? height : width) - 1 - coordinate;
+                    break;
+                case 270:
+                    vertical = !row;
+                    source = row ? width - 1 - coordinate : coordinate;
+                    break;
+                default:
+                    vertical = row;
+                    source = coordinate;
+            }
+            return (source / subsampling)
+                    * (vertical ? planeRowStride : planePixelStride);
+        }
+
+        boolean matches(int width,
+                        int height,
+                        int rowStride,
+                        int pixelStride,
+                        int chromaRowStride,
+                        int chromaPixelStride,
+                        RegionOfInterest region) {
+            return this.width == width
+                    && this.height == height
+                    && this.rowStride == rowStride
+                    && this.pixelStride == pixelStride
+                    && this.chromaRowStride == chromaRowStride
+                    && this.chromaPixelStride == chromaPixelStride
+                    && this.region.equals(region);
+        }
+    }
+}
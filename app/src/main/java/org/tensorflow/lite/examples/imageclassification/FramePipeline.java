@@ -0,0 +1,346 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs frames through a fixed sequence of stages, each on its own worker
+ * thread. Stages are connected by {@link SpscRingBuffer}s, so a slow stage
+ * never blocks the one before it: the oldest waiting frame is dropped and
+ * handed to the {@link Recycler} instead. While one stage works on frame N
+ * the previous stage can already work on frame N + 1.
+ *
+ * <p>One stage can run on several lanes, each a worker of its own, so
+ * consecutive frames are processed by that stage at the same time. Frames
+ * leave the lanes out of order, and the stage after them takes them back in
+ * order through a {@link ReorderBuffer}.
+ */
+public class FramePipeline<T> {
+    private static final int QUEUE_CAPACITY = 1;
+    private static final long IDLE = Long.MAX_VALUE;
+
+    public interface Stage<T> {
+        /** @return false to drop the frame instead of passing it on */
+        boolean process(T frame);
+    }
+
+    public interface Recycler<T> {
+        void recycle(T frame);
+    }
+
+    private final String name;
+    private final List<Stage<T>> stages;
+    // Input queues of each stage. The parallel stage has one per lane, fed
+    // by the stage before it, and the stage after it one per lane too, which
+    // it merges. Every other stage has a single queue.
+    private final List<List<SpscRingBuffer<T>>> queues = new ArrayList<>();
+    private final Thread[][] workers;
+    private final Recycler<T> recycler;
+    private final int parallelStage;
+    private final int maxLanes;
+    private final ReorderBuffer.Ordering<T> ordering;
+    private final long maxReorderNanos;
+    // Order of the oldest frame each lane is working on, or IDLE.
+    private final AtomicLongArray laneOrders;
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong lateFrames = new AtomicLong();
+    private volatile int activeLanes = 1;
+    private volatile boolean running;
+
+    public FramePipeline(String name, List<Stage<T>> stages, Recycler<T> recycler) {
+        this(name, stages, recycler, -1, 1, null, 0);
+    }
+
+    /**
+     * Same as above, except that stage {@code parallelStage} runs on up to
+     * {@code maxLanes} lanes. The stage after it gets their frames in
+     * increasing {@code ordering}: a finished frame waits up to
+     * {@code maxReorderNanos} for older frames still in a lane, and a frame
+     * that finishes after a newer one was passed on is dropped as late.
+     */
+    public FramePipeline(String name,
+                         List<Stage<T>> stages,
+                         Recycler<T> recycler,
+                         int parallelStage,
+                         int maxLanes,
+                         ReorderBuffer.Ordering<T> ordering,
+                         long maxReorderNanos) {
+        if (parallelStage >= stages.size() - 1 || maxLanes < 1) {
+            throw new IllegalArgumentException(
+                    "The parallel stage needs a stage after it to merge into");
+        }
+        this.name = name;
+        this.stages = new ArrayList<>(stages);
+        this.recycler = recycler;
+        this.parallelStage = parallelStage;
+        this.maxLanes = parallelStage >= 0 ? maxLanes : 1;
+        this.ordering = ordering;
+        this.maxReorderNanos = maxReorderNanos;
+        this.laneOrders = new AtomicLongArray(this.maxLanes);
+        this.workers = new Thread[stages.size()][];
+        for (int i = 0; i < stages.size(); i++) {
+            workers[i] = new Thread[i == parallelStage ? this.maxLanes : 1];
+            boolean laned = i == parallelStage || isMergeStage(i);
+            List<SpscRingBuffer<T>> inputs = new ArrayList<>();
+            for (int lane = 0; lane < (laned ? this.maxLanes : 1); lane++) {
+                inputs.add(new SpscRingBuffer<T>(QUEUE_CAPACITY));
+            }
+            queues.add(inputs);
+        }
+        for (int lane = 0; lane < this.maxLanes; lane++) {
+            laneOrders.set(lane, IDLE);
+        }
+    }
+
+    /** Minimum number of frames needed to keep every stage busy. */
+    public int framesInFlight() {
+        // One frame waiting in each queue, one being processed by each
+        // worker, one held for reordering per lane, and one being filled by
+        // the producer.
+        int frames = 1;
+        for (int i = 0; i < workers.length; i++) {
+            frames += queues.get(i).size() * QUEUE_CAPACITY + workers[i].length;
+        }
+        return parallelStage >= 0 ? frames + maxLanes : frames;
+    }
+
+    public int getMaxLanes() {
+        return maxLanes;
+    }
+
+    /**
+     * Spreads the parallel stage over {@code lanes} lanes from the next frame
+     * on, clamped to between 1 and {@link #getMaxLanes()}.
+     */
+    public void setActiveLanes(int lanes) {
+        activeLanes = Math.max(1, Math.min(maxLanes, lanes));
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workers.length; i++) {
+            final int stage = i;
+            for (int lane = 0; lane < workers[i].length; lane++) {
+                final int index = lane;
+                Runnable task;
+                String threadName = name + "-stage" + i;
+                if (stage == parallelStage) {
+                    task = () -> runLane(stage, index);
+                    threadName += "-lane" + index;
+                } else if (isMergeStage(stage)) {
+                    task = () -> runMerge(stage);
+                } else {
+                    task = () -> runStage(stage);
+                }
+                workers[i][lane] = new Thread(task, threadName);
+            }
+        }
+        for (Thread[] stageWorkers : workers) {
+            for (Thread worker : stageWorkers) {
+                worker.start();
+            }
+        }
+    }
+
+    /**
+     * Hands a frame to the first stage. Must always be called from the same
+     * thread. Never blocks.
+     */
+    public void submit(T frame) {
+        if (!running) {
+            recycler.recycle(frame);
+            return;
+        }
+        dispatch(0, 0, frame);
+    }
+
+    /**
+     * Tells the workers to exit once their current frame is done, without
+     * waiting for them.
+     */
+    public void stop() {
+        running = false;
+        for (Thread[] stageWorkers : workers) {
+            for (Thread worker : stageWorkers) {
+                if (worker != null) {
+                    LockSupport.unpark(worker);
+                }
+            }
+        }
+    }
+
+    /** Stops the workers and waits up to {@code timeoutMs} for them to exit. */
+    public void stop(long timeoutMs) throws InterruptedException {
+        stop();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Thread[] stageWorkers : workers) {
+            for (Thread worker : stageWorkers) {
+                if (worker != null) {
+                    worker.join(Math.max(1,
+                            deadline - System.currentTimeMillis()));
+                }
+            }
+        }
+    }
+
+    public long getDroppedFrameCount() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Frames dropped because they left the parallel stage after a newer frame
+     * had already been passed on.
+     */
+    public long getLateFrameCount() {
+        return lateFrames.get();
+    }
+
+    // Hands a frame to stage, coming from lane fromLane of the stage before.
+    private void dispatch(int stage, int fromLane, T frame) {
+        int lane = 0;
+        if (stage == parallelStage) {
+            lane = pickLane();
+        } else if (isMergeStage(stage)) {
+            lane = fromLane;
+        }
+        T evicted = queues.get(stage).get(lane).offer(frame);
+        if (evicted != null) {
+            droppedFrames.incrementAndGet();
+            recycler.recycle(evicted);
+        }
+        Thread worker = workers[stage][workers[stage].length > 1 ? lane : 0];
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    // The stage after the parallel one, which puts its frames back in order.
+    private boolean isMergeStage(int stage) {
+        return parallelStage >= 0 && stage == parallelStage + 1;
+    }
+
+    // An idle lane if there is one, or else the lane working on the oldest
+    // frame, which should be the first to free up. Only called by the one
+    // thread feeding the parallel stage.
+    private int pickLane() {
+        int lanes = activeLanes;
+        List<SpscRingBuffer<T>> inputs = queues.get(parallelStage);
+        int oldestLane = 0;
+        long oldestOrder = IDLE;
+        for (int lane = 0; lane < lanes; lane++) {
+            long order = laneOrders.get(lane);
+            if (order == IDLE && inputs.get(lane).size() == 0) {
+                return lane;
+            }
+            if (order < oldestOrder) {
+                oldestLane = lane;
+                oldestOrder = order;
+            }
+        }
+        return oldestLane;
+    }
+
+    private long oldestLaneOrder() {
+        long oldest = IDLE;
+        for (int lane = 0; lane < maxLanes; lane++) {
+            oldest = Math.min(oldest, laneOrders.get(lane));
+        }
+        return oldest;
+    }
+
+    private void process(int index, int lane, T frame) {
+        boolean passOn;
+        try {
+            passOn = stages.get(index).process(frame);
+        } catch (RuntimeException e) {
+            recycler.recycle(frame);
+            throw e;
+        }
+        if (passOn && index < stages.size() - 1) {
+            dispatch(index + 1, lane, frame);
+        } else {
+            recycler.recycle(frame);
+        }
+    }
+
+    private void runStage(int index) {
+        SpscRingBuffer<T> input = queues.get(index).get(0);
+        while (running) {
+            T frame = input.poll();
+            if (frame == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            process(index, 0, frame);
+        }
+        recycleAll(input);
+    }
+
+    private void runLane(int index, int lane) {
+        SpscRingBuffer<T> input = queues.get(index).get(lane);
+        Thread merger = workers[index + 1][0];
+        while (running) {
+            T frame = input.poll();
+            // The lane keeps reporting its last frame until it takes the
+            // next one, so the merger never sees it idle in between.
+            laneOrders.set(lane, frame != null ? ordering.orderOf(frame) : IDLE);
+            LockSupport.unpark(merger);
+            if (frame == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            process(index, lane, frame);
+        }
+        laneOrders.set(lane, IDLE);
+        recycleAll(input);
+    }
+
+    private void runMerge(int index) {
+        List<SpscRingBuffer<T>> inputs = queues.get(index);
+        ReorderBuffer<T> reorderBuffer =
+                new ReorderBuffer<>(ordering, maxLanes, maxReorderNanos);
+        while (running) {
+            for (int lane = 0; lane < inputs.size(); lane++) {
+                T frame;
+                while ((frame = inputs.get(lane).poll()) != null) {
+                    if (!reorderBuffer.add(frame)) {
+                        lateFrames.incrementAndGet();
+                        recycler.recycle(frame);
+                    }
+                }
+            }
+            long nowNanos = System.nanoTime();
+            T frame = reorderBuffer.poll(nowNanos, oldestLaneOrder());
+            if (frame != null) {
+                process(index, 0, frame);
+                continue;
+            }
+            long waitNanos = reorderBuffer.getWaitNanos(nowNanos);
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(this, waitNanos);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        T held;
+        while ((held = reorderBuffer.drain()) != null) {
+            recycler.recycle(held);
+        }
+        for (SpscRingBuffer<T> input : inputs) {
+            recycleAll(input);
+        }
+    }
+
+    private void recycleAll(SpscRingBuffer<T> input) {
+        T leftover;
+        while ((leftover = input.poll()) != null) {
+            recycler.recycle(leftover);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.app.Application;
+
+public class ImageClassificationApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupTracker.start();
+        // The landing screen's voice flow takes seconds; use them to get the
+        // camera and the classifier ready.
+        StartupPipeline.getInstance().start(this);
+    }
+}
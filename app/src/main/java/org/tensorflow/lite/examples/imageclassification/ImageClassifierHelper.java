@@ -3,33 +3,105 @@ package org.tensorflow.lite.examples.imageclassification;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.os.SystemClock;
-import android.speech.SpeechRecognizer;
 import android.util.Log;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.gpu.CompatibilityList;
-import org.tensorflow.lite.support.image.ImageProcessor;
+import org.tensorflow.lite.support.image.ColorSpaceType;
+import org.tensorflow.lite.support.image.ImageProperties;
 import org.tensorflow.lite.support.image.TensorImage;
-import org.tensorflow.lite.support.image.ops.Rot90Op;
+import org.tensorflow.lite.support.label.Category;
 import org.tensorflow.lite.task.core.BaseOptions;
 import org.tensorflow.lite.task.vision.classifier.Classifications;
 import org.tensorflow.lite.task.vision.classifier.ImageClassifier;
 
 public class ImageClassifierHelper {
     private static final String TAG = "ImageClassifierHelper";
-    private static final int DELEGATE_CPU = 0;
-    private static final int DELEGATE_GPU = 1;
-    private static final int DELEGATE_NNAPI = 2;
-    private static final int CUSTOM_DATA = 0;
-
-    private float threshold;
-    private int numThreads;
-    private int maxResults;
-    private int currentDelegate;
-    private int currentModel;
-    private final Context context;
+    public static final int DELEGATE_CPU = 0;
+    public static final int DELEGATE_GPU = 1;
+    public static final int DELEGATE_NNAPI = 2;
+    private static final int SCENE_GATE_LOG_INTERVAL = 300;
+    private static final long MAX_SENSOR_AGE_NANOS = 1_000_000_000L;
+    private static final long STARTUP_CLASSIFIER_TIMEOUT_MS = 2000;
+    private static final long READY_POLL_INTERVAL_MS = 10;
+    // How long a result classified by one instance of the pool waits for an
+    // older frame still being classified by another, before it is shown and
+    // the older one is dropped as late.
+    private static final long MAX_REORDER_NANOS = 50_000_000L;
+    public static final int MAX_POOL_SIZE = 4;
+    static final ClassifierConfig DEFAULT_CONFIG =
+            new ClassifierConfig(0.5f, 2, 1, DELEGATE_CPU, 0);
+
     private final ClassifierListener imageClassifierListener;
-    private ImageClassifier imageClassifier;
+    private final ModelRegistry modelRegistry;
+
+    // The configuration the UI asked for, and the classifier currently
+    // serving frames together with the configuration it was built from.
+    // Classifiers that are swapped out or closed go back to the model
+    // registry for reuse once their last inference has finished.
+    private final AtomicReference<ClassifierConfig> requestedConfig;
+    private final ClassifierLifecycle<ActiveClassifier> lifecycle;
+    private final ExecutorService rebuildExecutor =
+            Executors.newSingleThreadExecutor();
+    // When the latest config was requested, and whether a classifier built
+    // for it has produced a result since.
+    private volatile long configRequestedNanos = System.nanoTime();
+    private final AtomicBoolean firstResultPending = new AtomicBoolean(true);
+    // Only touched from the rebuild thread.
+    private TensorImage warmupFrame;
+
+    // Camera frames are captured on the caller's thread, then preprocessed,
+    // classified and reported on one worker each. Frames are recycled
+    // through a lock-free pool so steady-state frames allocate nothing.
+    private final FramePipeline<Frame> framePipeline;
+    private final AtomicReferenceArray<Frame> framePool;
+    private final AtomicLong capturedFrames = new AtomicLong();
+    private final AtomicLong poolExhaustedFrames = new AtomicLong();
+    private final AtomicLong preprocessingAllocations = new AtomicLong();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    // Skips frames that look the same as the last classified one.
+    private final SceneChangeGate sceneChangeGate = new SceneChangeGate();
+    // Results of recently classified frames, keyed by perceptual hash, so
+    // products that are scanned again skip inference.
+    private final ResultCache<CachedResult> resultCache = new ResultCache<>(
+            ResultCache.DEFAULT_MAX_DISTANCE,
+            ResultCache.DEFAULT_MEMORY_BUDGET_BYTES,
+            CachedResult::estimateBytes);
+    // Only touched from the preprocess stage.
+    private final PerceptualHash frameHasher = new PerceptualHash();
+
+    // The region of interest the UI asked for, applied to the next frame.
+    private volatile RegionRequest regionRequest =
+            new RegionRequest(RegionOfInterest.FULL_FRAME, 0f);
+
+    // Only touched from the thread that submits camera frames.
+    private FrameIngestor frameIngestor;
+    private boolean pipelineStarted;
+    private ActiveClassifier gatedClassifier;
+    private RegionRequest gatedRegion;
+    private RegionRequest ingestedRegion;
+    private float ingestedAspectRatio;
+
+    // Only touched from the thread that calls classify(Bitmap, int).
+    private RotateResizeKernel bitmapKernel;
+    private int[] bitmapPixels;
+    private ByteBuffer bitmapInput;
+    private TensorImage bitmapTensorImage;
+
     public ImageClassifierHelper(Float threshold,
                                  int numThreads,
                                  int maxResults,
@@ -37,13 +109,29 @@ public class ImageClassifierHelper {
                                  int currentModel,
                                  Context context,
                                  ClassifierListener imageClassifierListener) {
-        this.threshold = threshold;
-        this.numThreads = numThreads;
-        this.maxResults = maxResults;
-        this.currentDelegate = currentDelegate;
-        this.currentModel = currentModel;
-        this.context = context;
+        this.requestedConfig = new AtomicReference<>(new ClassifierConfig(
+                threshold, numThreads, maxResults, currentDelegate,
+                currentModel));
         this.imageClassifierListener = imageClassifierListener;
+        this.modelRegistry = ModelRegistry.getInstance(context);
+        this.lifecycle = new ClassifierLifecycle<>(this::releaseClassifier);
+        // Inference runs on one lane per classifier instance, and results
+        // reach the listener in the order the frames were captured.
+        this.framePipeline = new FramePipeline<>(TAG,
+                Arrays.<FramePipeline.Stage<Frame>>asList(
+                        this::preprocessFrame,
+                        this::inferFrame,
+                        this::postprocessFrame),
+                this::releaseFrame,
+                1,
+                MAX_POOL_SIZE,
+                frame -> frame.timestampNanos,
+                MAX_REORDER_NANOS);
+        this.framePool = new AtomicReferenceArray<>(
+                framePipeline.framesInFlight());
+        for (int i = 0; i < framePool.length(); i++) {
+            framePool.set(i, new Frame());
+        }
     }
 
     public static ImageClassifierHelper create(
@@ -51,133 +139,909 @@ public class ImageClassifierHelper {
             ClassifierListener listener
     ) {
         return new ImageClassifierHelper(
-                0.5f,
-                2,
-                1,
-                0,
-                0,
+                DEFAULT_CONFIG.getThreshold(),
+                DEFAULT_CONFIG.getNumThreads(),
+                DEFAULT_CONFIG.getMaxResults(),
+                DEFAULT_CONFIG.getDelegate(),
+                DEFAULT_CONFIG.getModel(),
                 context,
                 listener
         );
     }
 
+    public ClassifierConfig getConfig() {
+        return requestedConfig.get();
+    }
+
     public float getThreshold() {
-        return threshold;
+        return getConfig().getThreshold();
     }
 
     public void setThreshold(float threshold) {
-        this.threshold = threshold;
+        applyConfig(getConfig().withThreshold(threshold));
     }
 
     public int getNumThreads() {
-        return numThreads;
+        return getConfig().getNumThreads();
     }
 
     public void setNumThreads(int numThreads) {
-        this.numThreads = numThreads;
+        applyConfig(getConfig().withNumThreads(numThreads));
     }
 
     public int getMaxResults() {
-        return maxResults;
+        return getConfig().getMaxResults();
     }
 
     public void setMaxResults(int maxResults) {
-        this.maxResults = maxResults;
+        applyConfig(getConfig().withMaxResults(maxResults));
     }
 
     public void setCurrentDelegate(int currentDelegate) {
-        this.currentDelegate = currentDelegate;
+        applyConfig(getConfig().withDelegate(currentDelegate));
     }
 
     public void setCurrentModel(int currentModel) {
-        this.currentModel = currentModel;
+        applyConfig(getConfig().withModel(currentModel));
+    }
+
+    public int getPoolSize() {
+        return getConfig().getPoolSize();
+    }
+
+    /**
+     * Sets how many classifier instances classify consecutive camera frames
+     * at the same time, up to {@link #MAX_POOL_SIZE}. Each instance uses
+     * {@link #getNumThreads()} threads. More instances raise throughput on
+     * devices with spare cores, at the cost of memory and of some latency
+     * while results wait to be put back in frame order. Resizing keeps the
+     * instances already built, so growing the pool only builds the new ones.
+     */
+    public void setPoolSize(int poolSize) {
+        applyConfig(getConfig().withPoolSize(
+                Math.max(1, Math.min(MAX_POOL_SIZE, poolSize))));
     }
 
-    private void setupImageClassifier() {
+    /**
+     * Restricts classification of camera frames to a region of the preview.
+     * The region is cropped from the camera frame before it is rotated and
+     * scaled to the model input, so small objects keep more of their pixels.
+     * Only applies to frames passed to {@link #submitFrame}.
+     *
+     * @param region          the region, as fractions of the preview view
+     * @param viewAspectRatio width over height of the preview view, which
+     *                        shows the frame scaled to fill it from its top
+     *                        start corner; 0 if {@code region} already
+     *                        refers to the whole upright frame
+     */
+    public void setRegionOfInterest(RegionOfInterest region,
+                                    float viewAspectRatio) {
+        regionRequest = new RegionRequest(region, viewAspectRatio);
+    }
+
+    public RegionOfInterest getRegionOfInterest() {
+        return regionRequest.region;
+    }
+
+    /**
+     * Requests a new configuration. The replacement classifier is built on a
+     * background thread while the current one keeps serving frames, and is
+     * swapped in once it is ready. Requests made while a rebuild is running
+     * are coalesced into a single follow-up rebuild of the latest config.
+     */
+    public void applyConfig(ClassifierConfig config) {
+        ClassifierConfig previous = requestedConfig.getAndSet(config);
+        if (!config.equals(previous)) {
+            resultCache.invalidate();
+            configRequestedNanos = System.nanoTime();
+            firstResultPending.set(true);
+        }
+        if (!config.equals(previous) || lifecycle.peek() == null) {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * Waits until a classifier for the latest requested config is serving
+     * frames. Only meant for callers that are not on the frame path, such as
+     * tests.
+     */
+    public boolean awaitReady(long timeoutMs) throws InterruptedException {
+        scheduleRebuild();
+        long deadline = SystemClock.uptimeMillis() + timeoutMs;
+        while (!isReady()) {
+            if (SystemClock.uptimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(READY_POLL_INTERVAL_MS);
+        }
+        return true;
+    }
+
+    private boolean isReady() {
+        ActiveClassifier active = lifecycle.peek();
+        return active != null && active.config.equals(requestedConfig.get());
+    }
+
+    /** Where the classifier is in its life, for diagnostics. */
+    public ClassifierLifecycle.State getLifecycleState() {
+        return lifecycle.getState();
+    }
+
+    private void scheduleRebuild() {
+        // Only the caller that moves the lifecycle into a build state runs
+        // one; everyone else leaves it to the build already underway.
+        if (lifecycle.beginBuild()) {
+            try {
+                rebuildExecutor.execute(this::rebuild);
+            } catch (RuntimeException e) {
+                // The executor has been shut down by closeModel().
+                lifecycle.cancelBuild();
+            }
+        }
+    }
+
+    private void rebuild() {
+        ClassifierConfig target;
+        do {
+            target = requestedConfig.get();
+            ActiveClassifier current = lifecycle.peek();
+            ActiveClassifier classifier = null;
+            if (current == null || !current.config.equals(target)) {
+                classifier = setupImageClassifier(target);
+            }
+            if (classifier != null) {
+                // Disposed right away if closeModel() ran during the build.
+                if (lifecycle.publish(classifier)) {
+                    framePipeline.setActiveLanes(classifier.instances.length);
+                }
+            } else {
+                lifecycle.cancelBuild();
+            }
+            // A config requested during the build could not claim a build of
+            // its own, so it is picked up here.
+        } while (!target.equals(requestedConfig.get())
+                && lifecycle.beginBuild());
+    }
+
+    private ActiveClassifier setupImageClassifier(ClassifierConfig config) {
+        ModelRegistry.ModelInfo model = modelRegistry.getModel(config.getModel());
+        try {
+            StartupPipeline.getInstance().awaitClassifier(config,
+                    STARTUP_CLASSIFIER_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            // closeModel() shut the rebuild thread down.
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        PooledInstance[] instances = new PooledInstance[config.getPoolSize()];
+        int shared = shareServingInstances(config, instances);
+        // Instances left idle by an earlier session or pool are reused, and
+        // only the missing ones are built. A new model or delegate still
+        // builds a whole pool while the old one serves, so the two briefly
+        // coexist.
+        ClassifierConfig buildConfig = null;
+        try {
+            for (int i = shared; i < instances.length; i++) {
+                ImageClassifier idle = modelRegistry.take(config);
+                if (idle != null) {
+                    instances[i] = new PooledInstance(idle);
+                    continue;
+                }
+                if (buildConfig == null) {
+                    buildConfig = buildConfigFor(config);
+                }
+                ImageClassifier created =
+                        modelRegistry.createClassifier(buildConfig);
+                try {
+                    warmUp(created, model.getInputWidth(),
+                            model.getInputHeight());
+                } catch (RuntimeException e) {
+                    // One that cannot run must not go back to the registry.
+                    created.close();
+                    throw e;
+                }
+                instances[i] = new PooledInstance(created);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Delegates fail to initialise with runtime exceptions. Either
+            // way the build is abandoned, and the instances taken or shared
+            // so far are handed back.
+            for (PooledInstance instance : instances) {
+                if (instance != null) {
+                    releaseInstance(config, instance);
+                }
+            }
+            imageClassifierListener.onError("Image classifier failed to "
+                    + "initialize. See error logs for details");
+            Log.e(TAG, "TFLite failed to load model with error: "
+                    + e.getMessage());
+            return null;
+        }
+        return new ActiveClassifier(config, instances, model.getInputWidth(),
+                model.getInputHeight());
+    }
+
+    // The active classifier keeps the requested config even when it has to
+    // fall back to the CPU, so the request counts as served.
+    private ClassifierConfig buildConfigFor(ClassifierConfig config) {
+        if (config.getDelegate() == DELEGATE_GPU
+                && !new CompatibilityList().isDelegateSupportedOnThisDevice()) {
+            imageClassifierListener.onError("GPU is not supported on "
+                    + "this device");
+            return config.withDelegate(DELEGATE_CPU);
+        }
+        return config;
+    }
+
+    // When only the pool size changes, the new pool starts with the
+    // instances of the one serving frames instead of building them again.
+    // Returns how many of them were put in instances.
+    private int shareServingInstances(ClassifierConfig config,
+                                      PooledInstance[] instances) {
+        // The lease keeps the serving pool from being disposed of, by
+        // closeModel(), while its instances are being shared.
+        ClassifierLifecycle.Lease<ActiveClassifier> lease = lifecycle.acquire();
+        if (lease == null) {
+            return 0;
+        }
+        try {
+            ActiveClassifier serving = lease.get();
+            if (!serving.config.forInstance().equals(config.forInstance())) {
+                return 0;
+            }
+            int shared = Math.min(instances.length, serving.instances.length);
+            for (int i = 0; i < shared; i++) {
+                instances[i] = serving.instances[i];
+                instances[i].owners.incrementAndGet();
+            }
+            return shared;
+        } finally {
+            lease.release();
+        }
+    }
+
+    private void releaseClassifier(ActiveClassifier active) {
+        for (PooledInstance instance : active.instances) {
+            releaseInstance(active.config, instance);
+        }
+    }
+
+    // Returns the instance to the registry once no pool holds it any more.
+    private void releaseInstance(ClassifierConfig config,
+                                 PooledInstance instance) {
+        if (instance.owners.decrementAndGet() == 0) {
+            modelRegistry.release(config, instance.classifier);
+        }
+    }
+
+    /**
+     * Runs one inference on a synthetic frame, so delegate initialisation and
+     * the first-run allocations happen on the rebuild thread and the first
+     * camera frame sees warm latency.
+     */
+    private void warmUp(ImageClassifier classifier, int width, int height) {
+        if (warmupFrame == null || warmupFrame.getWidth() != width
+                || warmupFrame.getHeight() != height) {
+            warmupFrame = syntheticFrame(width, height);
+        }
+        long startNanos = System.nanoTime();
+        classifier.classify(warmupFrame);
+        metrics.recordWarmup((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /** A frame of reproducible noise, for warming up and benchmarking. */
+    static TensorImage syntheticFrame(int width, int height) {
+        byte[] pixels = new byte[width * height * 3];
+        new Random(0).nextBytes(pixels);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(pixels.length)
+                .order(ByteOrder.nativeOrder());
+        buffer.put(pixels).rewind();
+        TensorImage image = new TensorImage(DataType.UINT8);
+        image.load(buffer, ImageProperties.builder()
+                .setWidth(width)
+                .setHeight(height)
+                .setColorSpaceType(ColorSpaceType.RGB)
+                .build());
+        return image;
+    }
+
+    /** Task Library options for {@code config}, which must be supported. */
+    static ImageClassifier.ImageClassifierOptions buildOptions(
+            ClassifierConfig config) {
         ImageClassifier.ImageClassifierOptions.Builder optionsBuilder =
                 ImageClassifier.ImageClassifierOptions.builder()
-                        .setScoreThreshold(threshold)
-                        .setMaxResults(maxResults);
+                        .setScoreThreshold(config.getThreshold())
+                        .setMaxResults(config.getMaxResults());
 
         BaseOptions.Builder baseOptionsBuilder =
-                BaseOptions.builder().setNumThreads(numThreads);
+                BaseOptions.builder().setNumThreads(config.getNumThreads());
 
-        switch (currentDelegate) {
+        switch (config.getDelegate()) {
             case DELEGATE_CPU:
                 // Default
                 break;
             case DELEGATE_GPU:
-                if (new CompatibilityList().isDelegateSupportedOnThisDevice()) {
-                    baseOptionsBuilder.useGpu();
-                } else {
-                    imageClassifierListener.onError("GPU is not supported on "
-                            + "this device");
-                }
+                baseOptionsBuilder.useGpu();
                 break;
             case DELEGATE_NNAPI:
                 baseOptionsBuilder.useNnapi();
         }
+        return optionsBuilder.setBaseOptions(baseOptionsBuilder.build()).build();
+    }
 
-        String modelName;
-        switch (currentModel) {
-            case CUSTOM_DATA:
-                modelName = "model.tflite";
-                break;
-            default:
-                modelName = "mobilenetv1.tflite";
+    public interface ClassifierListener {
+        void onError(String error);
+
+        /**
+         * @param inferenceTime       milliseconds from frame capture until the
+         *                            result was ready
+         * @param frameTimestampNanos when the camera sensor captured the frame,
+         *                            in the {@link System#nanoTime()} time base
+         */
+        void onResults(List<Classifications> results,
+                       long inferenceTime,
+                       long frameTimestampNanos);
+    }
+
+    /**
+     * Stops classifying and returns the classifier to the model registry for
+     * the next camera session. Never waits for a running inference or build:
+     * whichever of them finishes last hands its classifier back.
+     */
+    public void closeModel(){
+        lifecycle.close();
+        rebuildExecutor.shutdownNow();
+        framePipeline.stop();
+    }
+
+    /**
+     * Classifies a single image synchronously on the calling thread with
+     * whichever classifier is currently active. If no classifier has been
+     * built yet the image is dropped instead of waiting. Meant for still
+     * images; camera frames go through {@link #submitFrame} instead, and the
+     * two must not be used at the same time.
+     */
+    public void classify(Bitmap image, int imageRotation) {
+        ClassifierLifecycle.Lease<ActiveClassifier> lease = lifecycle.acquire();
+        if (lease == null) {
+            scheduleRebuild();
+            return;
         }
+
+        ActiveClassifier active = lease.get();
+        int instance = active.claim();
+        long startNanos = System.nanoTime();
+        List<Classifications> result;
         try {
-            imageClassifier =
-                    ImageClassifier.createFromFileAndOptions(
-                            context,
-                            modelName,
-                            optionsBuilder.build());
-        } catch (IOException e) {
-            imageClassifierListener.onError("Image classifier failed to "
-                    + "initialize. See error logs for details");
-            Log.e(TAG, "TFLite failed to load model with error: "
-                    + e.getMessage());
+            if (instance < 0) {
+                return;
+            }
+            TensorImage tensorImage = preprocessBitmap(image, imageRotation,
+                    active.inputWidth, active.inputHeight);
+            metrics.recordSince(MetricsRegistry.Stage.PREPROCESS, startNanos);
+            long inferenceStart = System.nanoTime();
+            result = active.instances[instance].classifier
+                    .classify(tensorImage);
+            metrics.recordSince(MetricsRegistry.Stage.INFERENCE,
+                    inferenceStart);
+        } finally {
+            if (instance >= 0) {
+                active.unclaim(instance);
+            }
+            lease.release();
         }
+
+        long inferenceTime = (System.nanoTime() - startNanos) / 1_000_000;
+        imageClassifierListener.onResults(result, inferenceTime, startNanos);
+        metrics.frameDelivered();
+        noteResult(active.config);
     }
 
-    public void clearImageClassifier() {
-        imageClassifier = null;
+    /**
+     * Rotates and resizes {@code image} straight into a model input, so the
+     * full resolution image is read once and never rotated as a whole.
+     */
+    private TensorImage preprocessBitmap(Bitmap image,
+                                         int imageRotation,
+                                         int inputWidth,
+                                         int inputHeight) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (bitmapPixels == null || bitmapPixels.length < width * height) {
+            bitmapPixels = new int[width * height];
+            preprocessingAllocations.incrementAndGet();
+        }
+        image.getPixels(bitmapPixels, 0, width, 0, 0, width, height);
+
+        if (bitmapKernel == null
+                || bitmapKernel.getOutputWidth() != inputWidth
+                || bitmapKernel.getOutputHeight() != inputHeight) {
+            if (bitmapKernel != null) {
+                preprocessingAllocations.addAndGet(
+                        bitmapKernel.getAllocationCount());
+            }
+            bitmapKernel = new RotateResizeKernel(inputWidth, inputHeight);
+            bitmapInput = ByteBuffer.allocateDirect(inputWidth * inputHeight * 3)
+                    .order(ByteOrder.nativeOrder());
+            // The tensor image wraps the input buffer, which is refilled in
+            // place for every image.
+            bitmapTensorImage = new TensorImage(DataType.UINT8);
+            bitmapTensorImage.load(bitmapInput, ImageProperties.builder()
+                    .setWidth(inputWidth)
+                    .setHeight(inputHeight)
+                    .setColorSpaceType(ColorSpaceType.RGB)
+                    .build());
+            preprocessingAllocations.addAndGet(2);
+        }
+        bitmapKernel.process(bitmapPixels, width, height, imageRotation,
+                bitmapInput);
+        return bitmapTensorImage;
     }
 
-    public interface ClassifierListener {
-        void onError(String error);
+    /**
+     * Number of preprocessing objects (frame buffers, sampling tables, tensor
+     * images and pixel arrays) created so far. It stays flat once the
+     * rotations and frame sizes in use have each been seen once.
+     */
+    public long getPreprocessingAllocationCount() {
+        FrameIngestor ingestor = frameIngestor;
+        RotateResizeKernel kernel = bitmapKernel;
+        return preprocessingAllocations.get()
+                + (ingestor != null ? ingestor.getAllocationCount() : 0)
+                + (kernel != null ? kernel.getAllocationCount() : 0);
+    }
 
-        void onResults(List<Classifications> results, long inferenceTime);
+    /**
+     * The gate that lets unchanged camera frames skip inference. Its threshold
+     * can be tuned at runtime, and it reports its skip rate and cost.
+     */
+    public SceneChangeGate getSceneChangeGate() {
+        return sceneChangeGate;
     }
 
-    public void closeModel(){
-        if (imageClassifier != null) {
-            imageClassifier.close();
-            imageClassifier = null;
+    /** Cache of recent results, exposed for its hit, miss and eviction counts. */
+    public ResultCache<?> getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Per-stage latencies, frame rates and dropped frames. The listener's
+     * consumer records {@link MetricsRegistry.Stage#UI_RENDER} and
+     * {@link MetricsRegistry.Stage#END_TO_END} once it has shown a result.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /** Frames accepted from the camera since the helper was created. */
+    public long getCapturedFrameCount() {
+        return capturedFrames.get();
+    }
+
+    /**
+     * Frames dropped because a later stage was still busy, because every
+     * pooled frame was in flight, or because their result was late.
+     */
+    public long getDroppedFrameCount() {
+        return framePipeline.getDroppedFrameCount() + poolExhaustedFrames.get()
+                + framePipeline.getLateFrameCount();
+    }
+
+    /**
+     * Frames whose result was dropped because a newer frame classified by
+     * another instance of the pool had already been delivered.
+     */
+    public long getLateFrameCount() {
+        return framePipeline.getLateFrameCount();
+    }
+
+    /**
+     * Capture stage: converts a camera frame into the input of the active
+     * classifier and hands it to the pipeline. The plane is only read during
+     * this call, so the caller can release the camera image as soon as it
+     * returns; preprocessing, inference and result delivery happen on the
+     * pipeline workers. Never blocks. Must always be called from the same
+     * thread.
+     *
+     * <p>Frames that the {@link SceneChangeGate} finds unchanged since the
+     * last classified frame are skipped, and the previous result stands.
+     *
+     * @param sensorTimestampNanos the camera's timestamp for the frame, as
+     *                             reported by {@code ImageInfo#getTimestamp()}
+     * @return false if the frame was dropped, either because no classifier is
+     * ready yet, the scene has not changed or every pipeline slot is busy
+     */
+    public boolean submitFrame(ByteBuffer rgbaPlane,
+                               int width,
+                               int height,
+                               int rowStride,
+                               int pixelStride,
+                               int rotationDegrees,
+                               long sensorTimestampNanos) {
+        long arrivalNanos = System.nanoTime();
+        long timestampNanos = toNanoTime(sensorTimestampNanos, arrivalNanos);
+        ActiveClassifier active = beginFrame(arrivalNanos, timestampNanos);
+        if (active == null) {
+            return false;
         }
+        boolean changed = sceneChangeGate.shouldProcess(rgbaPlane, width,
+                height, rowStride, pixelStride);
+        Frame frame = acceptFrame(active, changed, width, height,
+                rotationDegrees, arrivalNanos, timestampNanos);
+        if (frame == null) {
+            return false;
+        }
+        frameIngestor.ingest(rgbaPlane, width, height, rowStride, pixelStride,
+                rotationDegrees, frame.rgb);
+        metrics.recordSince(MetricsRegistry.Stage.COPY, arrivalNanos);
+        framePipeline.submit(frame);
+        return true;
     }
 
-    public void classifyAndClose(Bitmap image, int imageRotation) {
-        if (imageClassifier == null) {
-            setupImageClassifier();
+    /**
+     * Same as {@link #submitFrame} for a YUV_420_888 camera frame. Colour
+     * conversion is fused with cropping, rotation and downscaling, and only
+     * done for the pixels the model sees, so the camera does not have to
+     * convert every frame to RGBA at full resolution first.
+     */
+    public boolean submitYuvFrame(ByteBuffer yPlane,
+                                  ByteBuffer uPlane,
+                                  ByteBuffer vPlane,
+                                  int width,
+                                  int height,
+                                  int yRowStride,
+                                  int uvRowStride,
+                                  int uvPixelStride,
+                                  int rotationDegrees,
+                                  long sensorTimestampNanos) {
+        long arrivalNanos = System.nanoTime();
+        long timestampNanos = toNanoTime(sensorTimestampNanos, arrivalNanos);
+        ActiveClassifier active = beginFrame(arrivalNanos, timestampNanos);
+        if (active == null) {
+            return false;
+        }
+        boolean changed = sceneChangeGate.shouldProcessLuma(yPlane, width,
+                height, yRowStride);
+        Frame frame = acceptFrame(active, changed, width, height,
+                rotationDegrees, arrivalNanos, timestampNanos);
+        if (frame == null) {
+            return false;
         }
+        frameIngestor.ingestYuv(yPlane, uPlane, vPlane, width, height,
+                yRowStride, uvRowStride, uvPixelStride, rotationDegrees,
+                frame.rgb);
+        metrics.recordSince(MetricsRegistry.Stage.COPY, arrivalNanos);
+        framePipeline.submit(frame);
+        return true;
+    }
 
-        long inferenceTime = SystemClock.uptimeMillis();
+    // Records the frame's arrival and returns the classifier it is for, with
+    // the scene gate reset if that classifier or the region changed. Returns
+    // null if no classifier is ready yet.
+    private ActiveClassifier beginFrame(long arrivalNanos, long timestampNanos) {
+        metrics.frameArrived();
+        metrics.record(MetricsRegistry.Stage.ARRIVAL,
+                (arrivalNanos - timestampNanos) / 1000);
 
-        ImageProcessor imageProcessor =
-                new ImageProcessor.Builder().add(new Rot90Op(-imageRotation / 90)).build();
+        ActiveClassifier active = lifecycle.peek();
+        if (active == null) {
+            scheduleRebuild();
+            return null;
+        }
+        RegionRequest region = regionRequest;
+        if (active != gatedClassifier || region != gatedRegion) {
+            // A new configuration or region may classify the same scene
+            // differently.
+            sceneChangeGate.reset();
+            gatedClassifier = active;
+            gatedRegion = region;
+        }
+        return active;
+    }
 
-        TensorImage tensorImage =
-                imageProcessor.process(TensorImage.fromBitmap(image));
-        imageClassifier.classify(tensorImage);
+    // Takes a pooled frame for a frame the scene gate let through and sets
+    // the ingestor up for the active classifier and region. Returns null if
+    // the frame is skipped or dropped.
+    private Frame acceptFrame(ActiveClassifier active,
+                              boolean changed,
+                              int width,
+                              int height,
+                              int rotationDegrees,
+                              long arrivalNanos,
+                              long timestampNanos) {
+        if (sceneChangeGate.getCheckedFrameCount() % SCENE_GATE_LOG_INTERVAL
+                == 0) {
+            Log.d(TAG, String.format(Locale.US,
+                    "Scene gate skipped %.1f%% of %d frames, %d us per check",
+                    sceneChangeGate.getSkipRate() * 100f,
+                    sceneChangeGate.getCheckedFrameCount(),
+                    sceneChangeGate.getAverageCheckNanos() / 1000));
+        }
+        if (!changed) {
+            return null;
+        }
+        if (!pipelineStarted) {
+            framePipeline.start();
+            pipelineStarted = true;
+        }
+        Frame frame = acquireFrame();
+        if (frame == null) {
+            // The gate already took this frame as its reference, so without
+            // a reset the change it saw would never be classified.
+            sceneChangeGate.reset();
+            poolExhaustedFrames.incrementAndGet();
+            metrics.frameDropped();
+            return null;
+        }
+        capturedFrames.incrementAndGet();
+        frame.captureNanos = arrivalNanos;
+        frame.timestampNanos = timestampNanos;
 
-        List<Classifications> result = imageClassifier.classify(tensorImage);
+        if (frameIngestor == null
+                || frameIngestor.getOutputWidth() != active.inputWidth
+                || frameIngestor.getOutputHeight() != active.inputHeight) {
+            if (frameIngestor != null) {
+                preprocessingAllocations.addAndGet(
+                        frameIngestor.getAllocationCount());
+            }
+            frameIngestor = new FrameIngestor(active.inputWidth,
+                    active.inputHeight);
+            ingestedRegion = null;
+        }
+        RegionRequest region = gatedRegion;
+        boolean transposed = rotationDegrees == 90 || rotationDegrees == 270;
+        float frameAspectRatio = transposed
+                ? (float) height / width : (float) width / height;
+        if (region != ingestedRegion
+                || frameAspectRatio != ingestedAspectRatio) {
+            frameIngestor.setRegionOfInterest(region.region.viewToFrame(
+                    region.viewAspectRatio, frameAspectRatio));
+            ingestedRegion = region;
+            ingestedAspectRatio = frameAspectRatio;
+        }
+        frame.ensureSize(active.inputWidth, active.inputHeight);
+        return frame;
+    }
 
-        inferenceTime = SystemClock.uptimeMillis() - inferenceTime;
-        imageClassifierListener.onResults(result, inferenceTime);
+    /**
+     * Converts a camera timestamp to the {@link System#nanoTime()} time base.
+     * Depending on the device, the sensor uses either that clock or
+     * {@link SystemClock#elapsedRealtimeNanos()}; whichever gives the frame a
+     * plausible age wins. Falls back to {@code nowNanos} if neither does.
+     */
+    private static long toNanoTime(long sensorTimestampNanos, long nowNanos) {
+        long uptimeAge = nowNanos - sensorTimestampNanos;
+        if (uptimeAge >= 0 && uptimeAge < MAX_SENSOR_AGE_NANOS) {
+            return sensorTimestampNanos;
+        }
+        long realtimeAge =
+                SystemClock.elapsedRealtimeNanos() - sensorTimestampNanos;
+        if (realtimeAge >= 0 && realtimeAge < MAX_SENSOR_AGE_NANOS) {
+            return nowNanos - realtimeAge;
+        }
+        return nowNanos;
+    }
 
-        // Close the model after classification and notify TTS completion
-        closeModel();
+    private boolean preprocessFrame(Frame frame) {
+        long startNanos = System.nanoTime();
+        // The tensor image wraps the frame's buffer, which is refilled in
+        // place for every frame, so it only has to be loaded after a resize.
+        if (frame.tensorImage == null) {
+            frame.tensorImage = new TensorImage(DataType.UINT8);
+            frame.tensorImage.load(frame.rgb, ImageProperties.builder()
+                    .setWidth(frame.width)
+                    .setHeight(frame.height)
+                    .setColorSpaceType(ColorSpaceType.RGB)
+                    .build());
+        }
+        frame.hash = frameHasher.compute(frame.rgb, frame.width, frame.height);
+        CachedResult cached = resultCache.get(frame.hash);
+        if (cached != null && cached.config.equals(requestedConfig.get())) {
+            frame.results = cached.results;
+            frame.config = cached.config;
+        }
+        metrics.recordSince(MetricsRegistry.Stage.PREPROCESS, startNanos);
+        return true;
     }
 
+    private boolean inferFrame(Frame frame) {
+        if (frame.results != null) {
+            // Served from the result cache.
+            frame.inferenceTime =
+                    (System.nanoTime() - frame.captureNanos) / 1_000_000;
+            return true;
+        }
+        ClassifierLifecycle.Lease<ActiveClassifier> lease = lifecycle.acquire();
+        if (lease == null) {
+            // Closed, or no classifier has been built yet.
+            return false;
+        }
+        ActiveClassifier active = lease.get();
+        // Each lane of the pipeline claims an instance of its own; there is
+        // none left only while the pool is resized, when frames of the old
+        // and the new pool claim the instances they share.
+        int instance = active.claim();
+        try {
+            if (instance < 0 || active.inputWidth != frame.width
+                    || active.inputHeight != frame.height) {
+                // The model changed since the frame was captured.
+                return false;
+            }
+            long startNanos = System.nanoTime();
+            frame.results = active.instances[instance].classifier.classify(
+                    frame.tensorImage);
+            frame.config = active.config;
+            metrics.recordSince(MetricsRegistry.Stage.INFERENCE, startNanos);
+        } finally {
+            if (instance >= 0) {
+                active.unclaim(instance);
+            }
+            lease.release();
+        }
+        if (active.config.equals(requestedConfig.get())) {
+            resultCache.put(frame.hash,
+                    new CachedResult(active.config, frame.results));
+        }
+        frame.inferenceTime =
+                (System.nanoTime() - frame.captureNanos) / 1_000_000;
+        return true;
+    }
+
+    private boolean postprocessFrame(Frame frame) {
+        if (lifecycle.getState() == ClassifierLifecycle.State.CLOSING) {
+            // The listener may already be torn down.
+            return false;
+        }
+        long startNanos = System.nanoTime();
+        imageClassifierListener.onResults(frame.results, frame.inferenceTime,
+                frame.timestampNanos);
+        metrics.recordSince(MetricsRegistry.Stage.POSTPROCESS, startNanos);
+        metrics.frameDelivered();
+        noteResult(frame.config);
+        frame.delivered = true;
+        return true;
+    }
+
+    // Records the time to first result once a result produced with the
+    // latest requested config has been delivered.
+    private void noteResult(ClassifierConfig config) {
+        if (config.equals(requestedConfig.get())
+                && firstResultPending.compareAndSet(true, false)) {
+            long micros = (System.nanoTime() - configRequestedNanos) / 1000;
+            metrics.recordTimeToFirstResult(micros);
+            Log.i(TAG, String.format(Locale.US,
+                    "First result %d us after requesting %s", micros, config));
+        }
+    }
+
+    private Frame acquireFrame() {
+        for (int i = 0; i < framePool.length(); i++) {
+            Frame frame = framePool.get(i);
+            if (frame != null && framePool.compareAndSet(i, frame, null)) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    private void releaseFrame(Frame frame) {
+        if (!frame.delivered) {
+            // Evicted by a later frame, superseded by a model change or
+            // caught by shutdown.
+            metrics.frameDropped();
+        }
+        frame.delivered = false;
+        frame.results = null;
+        frame.config = null;
+        for (int i = 0; i < framePool.length(); i++) {
+            if (framePool.compareAndSet(i, null, frame)) {
+                return;
+            }
+        }
+    }
+
+    private final class Frame {
+        ByteBuffer rgb;
+        TensorImage tensorImage;
+        int width;
+        int height;
+        long captureNanos;
+        long timestampNanos;
+        long inferenceTime;
+        boolean delivered;
+        long hash;
+        List<Classifications> results;
+        ClassifierConfig config;
+
+        void ensureSize(int width, int height) {
+            if (rgb != null && this.width == width && this.height == height) {
+                return;
+            }
+            this.width = width;
+            this.height = height;
+            rgb = ByteBuffer.allocateDirect(width * height * 3)
+                    .order(ByteOrder.nativeOrder());
+            tensorImage = null;
+            preprocessingAllocations.incrementAndGet();
+        }
+    }
+
+    private static final class CachedResult {
+        final ClassifierConfig config;
+        final List<Classifications> results;
+
+        CachedResult(ClassifierConfig config, List<Classifications> results) {
+            this.config = config;
+            this.results = results;
+        }
+
+        // Rough retained size: object headers plus each category and label.
+        int estimateBytes() {
+            int bytes = 64;
+            for (Classifications classifications : results) {
+                bytes += 48;
+                for (Category category : classifications.getCategories()) {
+                    bytes += 64 + 2 * category.getLabel().length();
+                }
+            }
+            return bytes;
+        }
+    }
+
+    private static final class RegionRequest {
+        final RegionOfInterest region;
+        final float viewAspectRatio;
+
+        RegionRequest(RegionOfInterest region, float viewAspectRatio) {
+            this.region = region;
+            this.viewAspectRatio = viewAspectRatio;
+        }
+    }
+
+    // A classifier instance and the state shared by every pool holding it.
+    private static final class PooledInstance {
+        final ImageClassifier classifier;
+        // Set while some thread is classifying with it. An ImageClassifier
+        // must not run two inferences at once, even for two pools.
+        final AtomicBoolean claimed = new AtomicBoolean();
+        // Pools holding the instance: the serving one and, while the pool
+        // size changes, the one replacing it.
+        final AtomicInteger owners = new AtomicInteger(1);
+
+        PooledInstance(ImageClassifier classifier) {
+            this.classifier = classifier;
+        }
+    }
+
+    private static final class ActiveClassifier {
+        final ClassifierConfig config;
+        final PooledInstance[] instances;
+        final int inputWidth;
+        final int inputHeight;
+
+        ActiveClassifier(ClassifierConfig config,
+                         PooledInstance[] instances,
+                         int inputWidth,
+                         int inputHeight) {
+            this.config = config;
+            this.instances = instances;
+            this.inputWidth = inputWidth;
+            this.inputHeight = inputHeight;
+        }
+
+        // Index of an instance no other thread is using, or -1.
+        int claim() {
+            for (int i = 0; i < instances.length; i++) {
+                if (instances[i].claimed.compareAndSet(false, true)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void unclaim(int instance) {
+            instances[instance].claimed.set(false);
+        }
+    }
 }
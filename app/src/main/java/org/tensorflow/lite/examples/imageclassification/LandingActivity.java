@@ -3,34 +3,40 @@ package org.tensorflow.lite.examples.imageclassification;
 import static android.content.ContentValues.TAG;
 
 import android.Manifest;
-import android.content.ActivityNotFoundException;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.speech.RecognitionListener;
 import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
-import android.speech.tts.TextToSpeech;
-import android.speech.tts.TextToSpeech.OnInitListener;
 import android.util.Log;
-import android.view.View;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Locale;
 
-public class LandingActivity extends AppCompatActivity implements OnInitListener, RecognitionListener {
+public class LandingActivity extends AppCompatActivity
+        implements SpeechScriptPlayer.Listener, RecognitionListener,
+        VoiceCommandSession.Listener<LandingActivity.Command> {
 
-    private TextToSpeech textToSpeech;
+    enum Command {
+        START
+    }
+
+    private SpeechScriptPlayer speechPlayer;
     private static final int REQUEST_RECORD_AUDIO_PERMISSION = 200;
     private SpeechRecognizer speechRecognizer;
+    private VoiceCommandSession<Command> commandSession;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean greeted;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -39,39 +45,45 @@ public class LandingActivity extends AppCompatActivity implements OnInitListener
 
         checkPermission();
 
-        textToSpeech = new TextToSpeech(this, this);
+        speechPlayer = new SpeechScriptPlayer(this, this);
 
-        speechRecognizer = SpeechRecognizer.createSpeechRecognizer(this);
-        speechRecognizer.setRecognitionListener(this);
+        if (SpeechRecognizer.isRecognitionAvailable(this)) {
+            speechRecognizer = SpeechRecognizer.createSpeechRecognizer(this);
+            speechRecognizer.setRecognitionListener(this);
+            commandSession = new VoiceCommandSession<>(recognizer(),
+                    scheduler(), new CommandMatcher<Command>()
+                    .add(Command.START, "start", "yes", "yeah", "begin",
+                            "let's go"),
+                    this);
+        } else {
+            Toast.makeText(this, "Speech recognition not supported on this device.", Toast.LENGTH_SHORT).show();
+        }
 
         greetUser();
     }
 
     @Override
-    public void onInit(int status) {
-        if (status == TextToSpeech.SUCCESS) {
-            int result = textToSpeech.setLanguage(Locale.getDefault());
+    public void onSpeechUnavailable() {
+        Log.d(TAG,"Text to Speech not implemented");
+        Toast.makeText(LandingActivity.this, "Text-to-Speech not supported on this device.", Toast.LENGTH_SHORT).show();
+    }
 
-            // Check if the language is supported
-            if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
-                Log.d(TAG,"Text to Speech not implemented");
-                Toast.makeText(LandingActivity.this, "Text-to-Speech not supported on this device.", Toast.LENGTH_SHORT).show();
-            } else {
-                greetUser();
-            }
-        } else {
-            Toast.makeText(LandingActivity.this, "Initialization failed.", Toast.LENGTH_SHORT).show();
+    @Override
+    public void onTextRevealed(int line, String text) {
+    }
+
+    // Listen only once the speech has finished, so it is not recognized as
+    // the user's answer.
+    @Override
+    public void onScriptDone() {
+        greeted = true;
+        if (commandSession != null) {
+            commandSession.start();
         }
     }
 
     private void greetUser() {
-        String greeting = "Hello there!";
-        textToSpeech.speak(greeting, TextToSpeech.QUEUE_FLUSH, null, null);
-
-        String comm = "Shall we begin?";
-        textToSpeech.speak(comm, TextToSpeech.QUEUE_FLUSH, null, null);
-
-        startSpeechRecognition(this.getCurrentFocus());
+        speechPlayer.play(SpeechScript.of("Hello there!", "Shall we begin?"));
     }
 
 
@@ -80,19 +92,64 @@ public class LandingActivity extends AppCompatActivity implements OnInitListener
         startActivity(intent);
     }
 
-    /** @noinspection deprecation*/
-    public void startSpeechRecognition(View view) {
+    private VoiceCommandSession.Recognizer recognizer() {
         Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
         intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
         intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault());
+        intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
+        return new VoiceCommandSession.Recognizer() {
+            @Override
+            public void startListening() {
+                speechRecognizer.startListening(intent);
+            }
 
-        try {
-            startActivityForResult(intent, REQUEST_RECORD_AUDIO_PERMISSION);
-        } catch (ActivityNotFoundException e) {
-            Toast.makeText(this, "Speech recognition not supported on this device.", Toast.LENGTH_SHORT).show();
-        }
+            @Override
+            public void cancel() {
+                speechRecognizer.cancel();
+            }
+        };
     }
 
+    private VoiceCommandSession.Scheduler scheduler() {
+        return new VoiceCommandSession.Scheduler() {
+            @Override
+            public void schedule(Runnable task, long delayMillis) {
+                handler.postDelayed(task, delayMillis);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                handler.removeCallbacks(task);
+            }
+
+            @Override
+            public long uptimeMillis() {
+                return SystemClock.uptimeMillis();
+            }
+        };
+    }
+
+    @Override
+    public void onCommand(CommandMatcher.Match<Command> match, long latencyMillis) {
+        Log.i("SpeechRecognition", "Command " + match + " after "
+                + latencyMillis + " ms, median "
+                + commandSession.getCommandLatency().percentileMicros(0.5) / 1000
+                + " ms");
+        startMainActivity();
+    }
+
+    @Override
+    public void onNotACommand(String text) {
+        Log.d("SpeechRecognition", "Command mismatch: " + text);
+        // Listen again once the answer has been spoken.
+        commandSession.stop();
+        speechPlayer.play(SpeechScript.of("Command not match"));
+    }
+
+    @Override
+    public void onUnavailable() {
+        Toast.makeText(this, "Speech recognition not supported on this device.", Toast.LENGTH_SHORT).show();
+    }
 
     private void checkPermission() {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
@@ -102,11 +159,23 @@ public class LandingActivity extends AppCompatActivity implements OnInitListener
         }
     }
 
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode == REQUEST_RECORD_AUDIO_PERMISSION && grantResults.length > 0
+                && grantResults[0] == PackageManager.PERMISSION_GRANTED
+                && greeted && commandSession != null) {
+            commandSession.start();
+        }
+    }
+
     @Override
     protected void onDestroy() {
-        if (textToSpeech != null) {
-            textToSpeech.stop();
-            textToSpeech.shutdown();
+        if (speechPlayer != null) {
+            speechPlayer.shutdown();
+        }
+        if (commandSession != null) {
+            commandSession.stop();
         }
         if (speechRecognizer != null) {
             speechRecognizer.destroy();
@@ -120,7 +189,7 @@ public class LandingActivity extends AppCompatActivity implements OnInitListener
 
     @Override
     public void onBeginningOfSpeech() {
-
+        commandSession.onBeginningOfSpeech();
     }
 
     @Override
@@ -141,33 +210,24 @@ public class LandingActivity extends AppCompatActivity implements OnInitListener
 
     @Override
     public void onError(int i) {
+        if (i == SpeechRecognizer.ERROR_SPEECH_TIMEOUT
+                || i == SpeechRecognizer.ERROR_NO_MATCH) {
+            // Silence or mumbling between commands, not a recognizer fault.
+            commandSession.onNothingHeard();
+            return;
+        }
         Log.e("SpeechRecognition", "Error: " + i);
-        startSpeechRecognition(this.getCurrentFocus());
+        commandSession.onError(i != SpeechRecognizer.ERROR_INSUFFICIENT_PERMISSIONS);
     }
 
     @Override
     public void onResults(Bundle results) {
-        // Get the speech recognition results
-        ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
-        List<String> commandList = Arrays.asList("Start", "Yes");
-        if (matches != null && !matches.isEmpty()) {
-            String command = matches.get(0).toLowerCase();
-            Log.d("SpeechRecognition", "Command: " + command);
-
-            for (String match : commandList) {
-                if(matches.equals(match)){
-                    startMainActivity();
-                } else {
-                    textToSpeech.speak("Command not match", TextToSpeech.QUEUE_FLUSH, null, null);
-                    Log.d("SpeechRecognition", "Command mismatch ");
-                }
-            }
-        }
+        commandSession.onResults(results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION));
     }
 
     @Override
-    public void onPartialResults(Bundle bundle) {
-
+    public void onPartialResults(Bundle partialResults) {
+        commandSession.onPartialResults(partialResults.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION));
     }
 
     @Override
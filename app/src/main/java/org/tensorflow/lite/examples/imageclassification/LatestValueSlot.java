@@ -0,0 +1,58 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free slot holding only the latest value. Producers never wait: a value
+ * that is replaced before the consumer takes it is dropped and counted,
+ * never queued.
+ */
+public class LatestValueSlot<T> {
+    private final AtomicReference<T> value = new AtomicReference<>();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Stores {@code item}, dropping the value it replaces, if any.
+     *
+     * @return true if the slot was empty, so the consumer needs to be told
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException("item");
+        }
+        T replaced = value.getAndSet(item);
+        if (replaced != null) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** Removes the latest value, or returns null if the slot is empty. */
+    public T take() {
+        T item = value.getAndSet(null);
+        if (item != null) {
+            delivered.incrementAndGet();
+        }
+        return item;
+    }
+
+    /** Discards the value waiting in the slot, if any, as dropped. */
+    public void clear() {
+        if (value.getAndSet(null) != null) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /** Number of values taken by the consumer. */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /** Number of values replaced or cleared before they were taken. */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
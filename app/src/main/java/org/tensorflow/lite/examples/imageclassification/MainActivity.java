@@ -17,4 +17,14 @@ public class MainActivity extends AppCompatActivity {
         activityMainBinding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(activityMainBinding.getRoot());
     }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            // Idle classifiers only make model switches faster; drop them
+            // before the system has to kill the app.
+            ModelRegistry.getInstance(this).evictAll();
+        }
+    }
 }
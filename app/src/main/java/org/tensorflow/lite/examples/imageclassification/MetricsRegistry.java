@@ -0,0 +1,241 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free registry of per-stage frame latencies, frame rates and dropped
+ * frames. Every pipeline thread records into it directly; readers take a
+ * {@link Snapshot} at any time. All latencies are in microseconds and all
+ * timestamps are in the {@link System#nanoTime()} time base.
+ */
+public class MetricsRegistry {
+
+    public enum Stage {
+        /** Camera sensor timestamp until the frame reaches the analyzer. */
+        ARRIVAL,
+        /** Scene check and copy of the camera plane into a pipeline frame. */
+        COPY,
+        PREPROCESS,
+        INFERENCE,
+        /** Result hand-off to the listener. */
+        POSTPROCESS,
+        /** Result hand-off until the views show it. */
+        UI_RENDER,
+        /** Time the UI thread spends applying a result to the views. */
+        UI_THREAD,
+        /** Camera sensor timestamp until the views show the result. */
+        END_TO_END,
+        /** Decision to announce the top label until speech starts. */
+        SPEECH
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LatencyHistogram[] histograms =
+            new LatencyHistogram[STAGES.length];
+    private final AtomicLong arrivedFrames = new AtomicLong();
+    private final AtomicLong deliveredFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong timeToFirstResultMicros = new AtomicLong(-1);
+    private final AtomicLong warmupMicros = new AtomicLong(-1);
+
+    // Start of the current window, and the counters when it started.
+    private final AtomicLong windowStartNanos;
+    private final AtomicLong windowArrivedFrames = new AtomicLong();
+    private final AtomicLong windowDeliveredFrames = new AtomicLong();
+
+    public MetricsRegistry() {
+        for (int i = 0; i < STAGES.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        windowStartNanos = new AtomicLong(System.nanoTime());
+    }
+
+    public void record(Stage stage, long micros) {
+        histograms[stage.ordinal()].record(micros);
+    }
+
+    /** Records the time from {@code startNanos} until now. */
+    public void recordSince(Stage stage, long startNanos) {
+        record(stage, (System.nanoTime() - startNanos) / 1000);
+    }
+
+    /** A camera frame reached the analyzer. */
+    public void frameArrived() {
+        arrivedFrames.incrementAndGet();
+    }
+
+    /** A result for a frame was handed to the listener. */
+    public void frameDelivered() {
+        deliveredFrames.incrementAndGet();
+    }
+
+    /** A frame was accepted but never produced a result. */
+    public void frameDropped() {
+        droppedFrames.incrementAndGet();
+    }
+
+    /**
+     * Time from the last configuration change until the first result of the
+     * classifier built for it.
+     */
+    public void recordTimeToFirstResult(long micros) {
+        timeToFirstResultMicros.set(micros);
+    }
+
+    /** Duration of the last warmup inference run on a new classifier. */
+    public void recordWarmup(long micros) {
+        warmupMicros.set(micros);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * Summarises everything recorded since the last reset.
+     *
+     * @param reset if true, the latency histograms and frame rate window start
+     *              over, so repeated calls report windowed statistics. Frame
+     *              totals are never reset.
+     */
+    public Snapshot snapshot(boolean reset) {
+        return snapshot(System.nanoTime(), reset);
+    }
+
+    Snapshot snapshot(long nowNanos, boolean reset) {
+        StageStats[] stages = new StageStats[STAGES.length];
+        for (int i = 0; i < STAGES.length; i++) {
+            LatencyHistogram histogram = histograms[i];
+            stages[i] = new StageStats(
+                    histogram.getCount(),
+                    histogram.percentileMicros(0.50),
+                    histogram.percentileMicros(0.95),
+                    histogram.percentileMicros(0.99),
+                    histogram.getMaxMicros());
+            if (reset) {
+                histogram.reset();
+            }
+        }
+        long arrived = arrivedFrames.get();
+        long delivered = deliveredFrames.get();
+        long start = windowStartNanos.get();
+        float seconds = Math.max(1L, nowNanos - start) / 1e9f;
+        float cameraFps = (arrived - windowArrivedFrames.get()) / seconds;
+        float resultFps = (delivered - windowDeliveredFrames.get()) / seconds;
+        if (reset && windowStartNanos.compareAndSet(start, nowNanos)) {
+            windowArrivedFrames.set(arrived);
+            windowDeliveredFrames.set(delivered);
+        }
+        return new Snapshot(stages, cameraFps, resultFps, arrived, delivered,
+                droppedFrames.get(), timeToFirstResultMicros.get(),
+                warmupMicros.get());
+    }
+
+    /** Latency percentiles of one stage, in microseconds. */
+    public static final class StageStats {
+        private final long count;
+        private final long p50Micros;
+        private final long p95Micros;
+        private final long p99Micros;
+        private final long maxMicros;
+
+        StageStats(long count,
+                   long p50Micros,
+                   long p95Micros,
+                   long p99Micros,
+                   long maxMicros) {
+            this.count = count;
+            this.p50Micros = p50Micros;
+            this.p95Micros = p95Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getP50Micros() {
+            return p50Micros;
+        }
+
+        public long getP95Micros() {
+            return p95Micros;
+        }
+
+        public long getP99Micros() {
+            return p99Micros;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+    }
+
+    /** Immutable view of the registry at one point in time. */
+    public static final class Snapshot {
+        private final StageStats[] stages;
+        private final float cameraFps;
+        private final float resultFps;
+        private final long arrivedFrames;
+        private final long deliveredFrames;
+        private final long droppedFrames;
+        private final long timeToFirstResultMicros;
+        private final long warmupMicros;
+
+        Snapshot(StageStats[] stages,
+                 float cameraFps,
+                 float resultFps,
+                 long arrivedFrames,
+                 long deliveredFrames,
+                 long droppedFrames,
+                 long timeToFirstResultMicros,
+                 long warmupMicros) {
+            this.stages = stages;
+            this.cameraFps = cameraFps;
+            this.resultFps = resultFps;
+            this.arrivedFrames = arrivedFrames;
+            this.deliveredFrames = deliveredFrames;
+            this.droppedFrames = droppedFrames;
+            this.timeToFirstResultMicros = timeToFirstResultMicros;
+            this.warmupMicros = warmupMicros;
+        }
+
+        public StageStats getStage(Stage stage) {
+            return stages[stage.ordinal()];
+        }
+
+        /** Frames per second arriving from the camera. */
+        public float getCameraFps() {
+            return cameraFps;
+        }
+
+        /** Results per second delivered to the listener. */
+        public float getResultFps() {
+            return resultFps;
+        }
+
+        public long getArrivedFrames() {
+            return arrivedFrames;
+        }
+
+        public long getDeliveredFrames() {
+            return deliveredFrames;
+        }
+
+        public long getDroppedFrames() {
+            return droppedFrames;
+        }
+
+        /** Last time to first result, or -1 if there has not been one yet. */
+        public long getTimeToFirstResultMicros() {
+            return timeToFirstResultMicros;
+        }
+
+        /** Last warmup inference time, or -1 if none has run yet. */
+        public long getWarmupMicros() {
+            return warmupMicros;
+        }
+    }
+}
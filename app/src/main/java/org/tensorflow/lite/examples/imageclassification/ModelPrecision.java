@@ -0,0 +1,77 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.Locale;
+
+/**
+ * Numeric precision a bundled model was converted with. Variants of one
+ * model share a file name and differ only in a precision suffix, such as
+ * {@code mobilenet_fp16.tflite} and {@code mobilenet_int8.tflite}; a file
+ * without a suffix is the float32 original unless its tensors say otherwise.
+ */
+public enum ModelPrecision {
+    FLOAT32("_fp32", "_float32"),
+    /** Float16 weights; the input and output tensors are still float32. */
+    FLOAT16("_fp16", "_float16"),
+    /** Integer quantized, with uint8 or int8 input and output tensors. */
+    INT8("_int8", "_uint8", "_quant");
+
+    private static final String MODEL_EXTENSION = ".tflite";
+
+    private final String[] suffixes;
+
+    ModelPrecision(String... suffixes) {
+        this.suffixes = suffixes;
+    }
+
+    /**
+     * The precision of a model, from its file name, or from its tensor types
+     * when the name has no precision suffix. Float16 models cannot be told
+     * from float32 ones by their tensors, so they need the suffix.
+     *
+     * @param quantizedTensors whether the input or output tensor is uint8 or
+     *                         int8
+     */
+    public static ModelPrecision of(String fileName, boolean quantizedTensors) {
+        if (quantizedTensors) {
+            return INT8;
+        }
+        String base = stripExtension(fileName);
+        for (ModelPrecision precision : values()) {
+            if (precision.suffixOf(base) != null) {
+                return precision;
+            }
+        }
+        return FLOAT32;
+    }
+
+    /**
+     * The name shared by all precision variants of a model: the file name
+     * without its extension and precision suffix.
+     */
+    public static String familyOf(String fileName) {
+        String base = stripExtension(fileName);
+        for (ModelPrecision precision : values()) {
+            String suffix = precision.suffixOf(base);
+            if (suffix != null) {
+                return base.substring(0, base.length() - suffix.length());
+            }
+        }
+        return base;
+    }
+
+    private String suffixOf(String base) {
+        String lowerCase = base.toLowerCase(Locale.US);
+        for (String suffix : suffixes) {
+            if (lowerCase.endsWith(suffix)) {
+                return suffix;
+            }
+        }
+        return null;
+    }
+
+    private static String stripExtension(String fileName) {
+        return fileName.endsWith(MODEL_EXTENSION)
+                ? fileName.substring(0, fileName.length() - MODEL_EXTENSION.length())
+                : fileName;
+    }
+}
@@ -0,0 +1,459 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.schema.TensorType;
+import org.tensorflow.lite.support.common.FileUtil;
+import org.tensorflow.lite.support.metadata.MetadataExtractor;
+import org.tensorflow.lite.support.metadata.schema.AssociatedFile;
+import org.tensorflow.lite.support.metadata.schema.AssociatedFileType;
+import org.tensorflow.lite.support.metadata.schema.ModelMetadata;
+import org.tensorflow.lite.support.metadata.schema.TensorMetadata;
+import org.tensorflow.lite.task.vision.classifier.ImageClassifier;
+
+/**
+ * The models bundled in the app's assets, and the classifiers recently built
+ * from them. Models are discovered once, together with their metadata, but
+ * only loaded when first used. Each model file is memory-mapped once per
+ * process and every classifier is built from that shared buffer, so the
+ * weights are neither read nor copied again. Classifiers that are no longer
+ * serving frames are kept idle in an LRU capped by a memory budget, so
+ * switching back to a recently used model or configuration does not rebuild
+ * the interpreter. Models converted at several precisions are grouped into
+ * families of {@link ModelPrecision} variants.
+ */
+public class ModelRegistry {
+    private static final String TAG = "ModelRegistry";
+    private static final String MODEL_EXTENSION = ".tflite";
+    // The model the app was built around is always listed first.
+    private static final String DEFAULT_MODEL = "model.tflite";
+    public static final long DEFAULT_MEMORY_BUDGET_BYTES = 64L * 1024 * 1024;
+
+    private static ModelRegistry instance;
+
+    /** Element type and quantization of a model's input or output tensor. */
+    public static final class TensorInfo {
+        private final DataType type;
+        private final float scale;
+        private final int zeroPoint;
+
+        TensorInfo(DataType type, float scale, int zeroPoint) {
+            this.type = type;
+            this.scale = scale;
+            this.zeroPoint = zeroPoint;
+        }
+
+        public DataType getType() {
+            return type;
+        }
+
+        /** Real value of one quantization step; 0 for float tensors. */
+        public float getScale() {
+            return scale;
+        }
+
+        public int getZeroPoint() {
+            return zeroPoint;
+        }
+
+        public boolean isQuantized() {
+            return type == DataType.UINT8 || type == DataType.INT8;
+        }
+
+        @Override
+        public String toString() {
+            return isQuantized()
+                    ? type + " (scale " + scale + ", zero point " + zeroPoint
+                            + ")"
+                    : String.valueOf(type);
+        }
+    }
+
+    /** A model file in the assets and what its metadata says about it. */
+    public static final class ModelInfo {
+        private final String fileName;
+        private final String name;
+        private final String description;
+        private final long sizeBytes;
+        private final int inputWidth;
+        private final int inputHeight;
+        private final TensorInfo input;
+        private final TensorInfo output;
+        private final ModelPrecision precision;
+
+        ModelInfo(String fileName,
+                  String name,
+                  String description,
+                  long sizeBytes,
+                  int inputWidth,
+                  int inputHeight,
+                  TensorInfo input,
+                  TensorInfo output) {
+            this.fileName = fileName;
+            this.name = name;
+            this.description = description;
+            this.sizeBytes = sizeBytes;
+            this.inputWidth = inputWidth;
+            this.inputHeight = inputHeight;
+            this.input = input;
+            this.output = output;
+            this.precision = ModelPrecision.of(fileName,
+                    input.isQuantized() || output.isQuantized());
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        /** Name shared by every precision variant of this model. */
+        public String getFamily() {
+            return ModelPrecision.familyOf(fileName);
+        }
+
+        public ModelPrecision getPrecision() {
+            return precision;
+        }
+
+        /**
+         * The image input. A quantized model takes the camera's RGB bytes
+         * as they are; a float model has them normalised by the Task
+         * Library as its metadata describes.
+         */
+        public TensorInfo getInput() {
+            return input;
+        }
+
+        /** The score output. */
+        public TensorInfo getOutput() {
+            return output;
+        }
+
+        /** The name from the model's metadata, or its file name. */
+        public String getName() {
+            return name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+
+        public int getInputWidth() {
+            return inputWidth;
+        }
+
+        public int getInputHeight() {
+            return inputHeight;
+        }
+
+        /**
+         * Rough memory held by a classifier built from this model: the
+         * weights, plus about as much again for the interpreter's tensors.
+         */
+        public long getEstimatedClassifierBytes() {
+            return 2 * sizeBytes;
+        }
+    }
+
+    private final Context context;
+    private final long memoryBudgetBytes;
+    private List<ModelInfo> models;
+    private final Map<String, MappedByteBuffer> modelBuffers = new HashMap<>();
+    // Idle classifiers by the config of a single instance, in access order,
+    // least recently used first. A pool leaves several behind for one config.
+    private final LinkedHashMap<ClassifierConfig, ArrayDeque<ImageClassifier>>
+            idleClassifiers = new LinkedHashMap<>(16, 0.75f, true);
+    private int idleCount;
+    private long idleBytes;
+
+    ModelRegistry(Context context, long memoryBudgetBytes) {
+        this.context = context.getApplicationContext();
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public static synchronized ModelRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new ModelRegistry(context, DEFAULT_MEMORY_BUDGET_BYTES);
+        }
+        return instance;
+    }
+
+    /** Every readable model in the assets, the default model first. */
+    public synchronized List<ModelInfo> getModels() {
+        if (models == null) {
+            models = Collections.unmodifiableList(discoverModels());
+        }
+        return models;
+    }
+
+    /**
+     * @param model index into {@link #getModels()}, as stored in
+     *              {@link ClassifierConfig#getModel()}
+     */
+    public ModelInfo getModel(int model) {
+        List<ModelInfo> models = getModels();
+        if (model < 0 || model >= models.size()) {
+            throw new IllegalArgumentException("No model " + model + " among "
+                    + models.size() + " bundled models");
+        }
+        return models.get(model);
+    }
+
+    /**
+     * Indices into {@link #getModels()} of every precision variant of
+     * {@code model}, itself included, from the highest precision down.
+     */
+    public List<Integer> getVariants(int model) {
+        String family = getModel(model).getFamily();
+        List<ModelInfo> models = getModels();
+        List<Integer> variants = new ArrayList<>();
+        for (ModelPrecision precision : ModelPrecision.values()) {
+            for (int i = 0; i < models.size(); i++) {
+                ModelInfo candidate = models.get(i);
+                if (candidate.getPrecision() == precision
+                        && candidate.getFamily().equals(family)) {
+                    variants.add(i);
+                }
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * The model file mapped read-only into memory, shared by every classifier
+     * in the process. Callers must not modify it or move its position; use a
+     * {@link MappedByteBuffer#duplicate() duplicate} to read it.
+     */
+    public synchronized MappedByteBuffer getModelBuffer(ModelInfo model)
+            throws IOException {
+        return mapModel(model.getFileName());
+    }
+
+    /**
+     * The labels of the model's output, in index order, read from the label
+     * file packed in its metadata. Reads the file each time; call it from a
+     * background thread.
+     *
+     * @return the labels, or an empty list if the model has none
+     */
+    public List<String> loadLabels(int model) throws IOException {
+        MetadataExtractor extractor = new MetadataExtractor(
+                getModelBuffer(getModel(model)).duplicate());
+        if (!extractor.hasMetadata()) {
+            return Collections.emptyList();
+        }
+        TensorMetadata output = extractor.getOutputTensorMetadata(0);
+        for (int i = 0; output != null && i < output.associatedFilesLength();
+             i++) {
+            AssociatedFile file = output.associatedFiles(i);
+            if (file.type() == AssociatedFileType.TENSOR_AXIS_LABELS) {
+                try (InputStream labels =
+                             extractor.getAssociatedFile(file.name())) {
+                    return FileUtil.loadLabels(labels);
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /** Builds a new classifier from the shared buffer of the config's model. */
+    public ImageClassifier createClassifier(ClassifierConfig config)
+            throws IOException {
+        return ImageClassifier.createFromBufferAndOptions(
+                getModelBuffer(getModel(config.getModel())),
+                ImageClassifierHelper.buildOptions(config));
+    }
+
+    /**
+     * Removes and returns an idle classifier built for {@code config}. The
+     * caller owns it until it hands it back with {@link #release}. Any pool
+     * size can be passed; each call takes one instance.
+     *
+     * @return the classifier, or null if none is cached for this config
+     */
+    public synchronized ImageClassifier take(ClassifierConfig config) {
+        ClassifierConfig key = config.forInstance();
+        ArrayDeque<ImageClassifier> idle = idleClassifiers.get(key);
+        if (idle == null) {
+            return null;
+        }
+        ImageClassifier classifier = idle.pop();
+        if (idle.isEmpty()) {
+            idleClassifiers.remove(key);
+        }
+        idleCount--;
+        idleBytes -= estimatedBytes(key);
+        return classifier;
+    }
+
+    /**
+     * Keeps a classifier that no longer serves frames for later reuse. The
+     * classifier must not be running an inference any more. Least recently
+     * used classifiers are closed until the idle ones fit the budget.
+     */
+    public synchronized void release(ClassifierConfig config,
+                                     ImageClassifier classifier) {
+        ClassifierConfig key = config.forInstance();
+        ArrayDeque<ImageClassifier> idle = idleClassifiers.get(key);
+        if (idle == null) {
+            idle = new ArrayDeque<>();
+            idleClassifiers.put(key, idle);
+        }
+        idle.push(classifier);
+        idleCount++;
+        idleBytes += estimatedBytes(key);
+        Iterator<Map.Entry<ClassifierConfig, ArrayDeque<ImageClassifier>>>
+                eldest = idleClassifiers.entrySet().iterator();
+        while (idleBytes > memoryBudgetBytes && eldest.hasNext()) {
+            Map.Entry<ClassifierConfig, ArrayDeque<ImageClassifier>> entry =
+                    eldest.next();
+            ArrayDeque<ImageClassifier> classifiers = entry.getValue();
+            while (idleBytes > memoryBudgetBytes && !classifiers.isEmpty()) {
+                classifiers.removeLast().close();
+                idleCount--;
+                idleBytes -= estimatedBytes(entry.getKey());
+            }
+            if (classifiers.isEmpty()) {
+                eldest.remove();
+            }
+        }
+    }
+
+    /** Closes every idle classifier, for example when memory runs low. */
+    public synchronized void evictAll() {
+        for (ArrayDeque<ImageClassifier> classifiers
+                : idleClassifiers.values()) {
+            for (ImageClassifier classifier : classifiers) {
+                classifier.close();
+            }
+        }
+        idleClassifiers.clear();
+        idleCount = 0;
+        idleBytes = 0;
+    }
+
+    public synchronized int getIdleClassifierCount() {
+        return idleCount;
+    }
+
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+    private long estimatedBytes(ClassifierConfig config) {
+        return getModel(config.getModel()).getEstimatedClassifierBytes();
+    }
+
+    private List<ModelInfo> discoverModels() {
+        String[] files;
+        try {
+            files = context.getAssets().list("");
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot list assets", e);
+            return new ArrayList<>();
+        }
+        List<String> names = new ArrayList<>();
+        for (String file : files) {
+            if (file.endsWith(MODEL_EXTENSION)) {
+                names.add(file);
+            }
+        }
+        Collections.sort(names, (a, b) -> {
+            if (a.equals(b)) {
+                return 0;
+            }
+            if (a.equals(DEFAULT_MODEL)) {
+                return -1;
+            }
+            if (b.equals(DEFAULT_MODEL)) {
+                return 1;
+            }
+            return a.compareTo(b);
+        });
+
+        List<ModelInfo> models = new ArrayList<>();
+        for (String fileName : names) {
+            try {
+                models.add(readModelInfo(fileName));
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Skipping unreadable model " + fileName, e);
+            }
+        }
+        return models;
+    }
+
+    // Only maps the file and parses its metadata; no interpreter is built.
+    private ModelInfo readModelInfo(String fileName) throws IOException {
+        MappedByteBuffer model = mapModel(fileName);
+        MetadataExtractor extractor = new MetadataExtractor(model.duplicate());
+        int[] inputShape = extractor.getInputTensorShape(0);
+
+        String name = fileName.substring(0,
+                fileName.length() - MODEL_EXTENSION.length());
+        String description = "";
+        if (extractor.hasMetadata()) {
+            ModelMetadata metadata = extractor.getModelMetadata();
+            if (metadata.name() != null && !metadata.name().isEmpty()) {
+                name = metadata.name();
+            }
+            if (metadata.description() != null) {
+                description = metadata.description();
+            }
+        }
+        TensorInfo input = tensorInfo(extractor.getInputTensorType(0),
+                extractor.getInputTensorQuantizationParams(0));
+        TensorInfo output = tensorInfo(extractor.getOutputTensorType(0),
+                extractor.getOutputTensorQuantizationParams(0));
+        Log.i(TAG, fileName + ": input " + input + ", output " + output);
+        // Input tensors are NHWC.
+        return new ModelInfo(fileName, name, description, model.capacity(),
+                inputShape[2], inputShape[1], input, output);
+    }
+
+    private static TensorInfo tensorInfo(
+            byte tensorType,
+            MetadataExtractor.QuantizationParams quantization) {
+        DataType type;
+        switch (tensorType) {
+            case TensorType.UINT8:
+                type = DataType.UINT8;
+                break;
+            case TensorType.INT8:
+                type = DataType.INT8;
+                break;
+            case TensorType.INT32:
+                type = DataType.INT32;
+                break;
+            default:
+                // Float32, or a type the Task Library rejects anyway.
+                type = DataType.FLOAT32;
+        }
+        return quantization == null ? new TensorInfo(type, 0f, 0)
+                : new TensorInfo(type, quantization.getScale(),
+                        quantization.getZeroPoint());
+    }
+
+    private MappedByteBuffer mapModel(String fileName) throws IOException {
+        MappedByteBuffer buffer = modelBuffers.get(fileName);
+        if (buffer == null) {
+            buffer = FileUtil.loadMappedFile(context, fileName);
+            modelBuffers.put(fileName, buffer);
+        }
+        return buffer;
+    }
+}
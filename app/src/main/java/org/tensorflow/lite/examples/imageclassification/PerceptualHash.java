@@ -0,0 +1,61 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 64-bit difference hash of an RGB image. The image is reduced to a 9x8 grid
+ * of average luma values and each bit records whether a cell is brighter than
+ * its right-hand neighbour. Visually similar images produce hashes that differ
+ * in only a few bits. An instance reuses its scratch grid between calls and
+ * must only be used from one thread at a time.
+ */
+public final class PerceptualHash {
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    private final long[] sums = new long[GRID_WIDTH * GRID_HEIGHT];
+    private final int[] counts = new int[GRID_WIDTH * GRID_HEIGHT];
+
+    /**
+     * @param rgb    tightly packed 8-bit RGB pixels, read with absolute gets
+     * @param width  image width in pixels
+     * @param height image height in pixels
+     */
+    public long compute(ByteBuffer rgb, int width, int height) {
+        Arrays.fill(sums, 0);
+        Arrays.fill(counts, 0);
+        int offset = 0;
+        for (int y = 0; y < height; y++) {
+            int row = (y * GRID_HEIGHT / height) * GRID_WIDTH;
+            for (int x = 0; x < width; x++) {
+                int cell = row + x * GRID_WIDTH / width;
+                int r = rgb.get(offset) & 0xFF;
+                int g = rgb.get(offset + 1) & 0xFF;
+                int b = rgb.get(offset + 2) & 0xFF;
+                sums[cell] += (77 * r + 150 * g + 29 * b) >> 8;
+                counts[cell]++;
+                offset += 3;
+            }
+        }
+
+        long hash = 0;
+        int bit = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            for (int gx = 0; gx < GRID_WIDTH - 1; gx++) {
+                int cell = gy * GRID_WIDTH + gx;
+                // Compare averages without dividing: a/ca > b/cb.
+                if (sums[cell] * counts[cell + 1]
+                        > sums[cell + 1] * counts[cell]) {
+                    hash |= 1L << bit;
+                }
+                bit++;
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
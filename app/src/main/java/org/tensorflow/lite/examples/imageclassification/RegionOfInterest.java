@@ -0,0 +1,137 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+/**
+ * The part of a frame that is classified, as fractions of the upright image:
+ * left and top inclusive, right and bottom exclusive, all within [0, 1].
+ * Being upright and normalised, the same region applies to every sensor
+ * rotation and frame resolution.
+ */
+public final class RegionOfInterest {
+    /** Regions smaller than this fraction of a side are grown to it. */
+    public static final float MIN_SIZE = 0.05f;
+
+    public static final RegionOfInterest FULL_FRAME =
+            new RegionOfInterest(0f, 0f, 1f, 1f);
+
+    private final float left;
+    private final float top;
+    private final float right;
+    private final float bottom;
+
+    /**
+     * Edges outside [0, 1] are clamped, and sides shorter than
+     * {@link #MIN_SIZE} are grown, so every region covers some pixels.
+     */
+    public RegionOfInterest(float left, float top, float right, float bottom) {
+        if (!(left <= right) || !(top <= bottom)) {
+            throw new IllegalArgumentException("Invalid region " + left + ", "
+                    + top + ", " + right + ", " + bottom);
+        }
+        float[] horizontal = clampSpan(left, right);
+        float[] vertical = clampSpan(top, bottom);
+        this.left = horizontal[0];
+        this.right = horizontal[1];
+        this.top = vertical[0];
+        this.bottom = vertical[1];
+    }
+
+    /** A centred region covering {@code fraction} of each side of the frame. */
+    public static RegionOfInterest centerCrop(float fraction) {
+        float margin = (1f - fraction) / 2f;
+        return new RegionOfInterest(margin, margin, 1f - margin, 1f - margin);
+    }
+
+    public float getLeft() {
+        return left;
+    }
+
+    public float getTop() {
+        return top;
+    }
+
+    public float getRight() {
+        return right;
+    }
+
+    public float getBottom() {
+        return bottom;
+    }
+
+    public float getWidth() {
+        return right - left;
+    }
+
+    public float getHeight() {
+        return bottom - top;
+    }
+
+    public boolean isFullFrame() {
+        return left == 0f && top == 0f && right == 1f && bottom == 1f;
+    }
+
+    /**
+     * Maps a region drawn over a preview that scales the frame to fill the
+     * view and aligns it to the top start corner, as {@code PreviewView} does
+     * with {@code FILL_START}, to the same region of the upright frame. The
+     * parts of the frame cropped away by the preview are never selected.
+     *
+     * @param viewAspectRatio  width over height of the preview view
+     * @param frameAspectRatio width over height of the upright frame
+     */
+    public RegionOfInterest viewToFrame(float viewAspectRatio,
+                                        float frameAspectRatio) {
+        if (viewAspectRatio <= 0f || frameAspectRatio <= 0f) {
+            return this;
+        }
+        // Fraction of each side of the frame that is visible in the view.
+        float visibleWidth = Math.min(1f, viewAspectRatio / frameAspectRatio);
+        float visibleHeight = Math.min(1f, frameAspectRatio / viewAspectRatio);
+        return new RegionOfInterest(left * visibleWidth, top * visibleHeight,
+                right * visibleWidth, bottom * visibleHeight);
+    }
+
+    // Clamps [start, end] to [0, 1] and grows it to at least MIN_SIZE.
+    private static float[] clampSpan(float start, float end) {
+        start = Math.max(0f, Math.min(1f, start));
+        end = Math.max(0f, Math.min(1f, end));
+        if (end - start < MIN_SIZE) {
+            float centre = Math.max(MIN_SIZE / 2f,
+                    Math.min(1f - MIN_SIZE / 2f, (start + end) / 2f));
+            start = centre - MIN_SIZE / 2f;
+            end = centre + MIN_SIZE / 2f;
+        }
+        return new float[]{start, end};
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RegionOfInterest)) {
+            return false;
+        }
+        RegionOfInterest other = (RegionOfInterest) o;
+        return Float.compare(left, other.left) == 0
+                && Float.compare(top, other.top) == 0
+                && Float.compare(right, other.right) == 0
+                && Float.compare(bottom, other.bottom) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(left);
+        result = 31 * result + Float.floatToIntBits(top);
+        result = 31 * result + Float.floatToIntBits(right);
+        result = 31 * result + Float.floatToIntBits(bottom);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RegionOfInterest{left=" + left
+                + ", top=" + top
+                + ", right=" + right
+                + ", bottom=" + bottom + "}";
+    }
+}
@@ -0,0 +1,156 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Overlay that shows the {@link RegionOfInterest} over the camera preview and
+ * dims everything outside it. When editable, the box is moved by dragging and
+ * resized by pinching.
+ */
+public class RegionOfInterestView extends View {
+    private static final float STROKE_WIDTH_DP = 2f;
+
+    public interface OnRegionChangedListener {
+        void onRegionChanged(RegionOfInterest region);
+    }
+
+    private final Paint boxPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint outsidePaint = new Paint();
+    private final RectF box = new RectF();
+    private final ScaleGestureDetector scaleDetector;
+    private RegionOfInterest region = RegionOfInterest.FULL_FRAME;
+    private OnRegionChangedListener listener;
+    private boolean editable;
+    private float lastTouchX;
+    private float lastTouchY;
+
+    public RegionOfInterestView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        boxPaint.setStyle(Paint.Style.STROKE);
+        boxPaint.setStrokeWidth(
+                STROKE_WIDTH_DP * getResources().getDisplayMetrics().density);
+        boxPaint.setColor(
+                ContextCompat.getColor(context, R.color.bounding_box_color));
+        outsidePaint.setColor(
+                ContextCompat.getColor(context, R.color.roi_outside_color));
+        scaleDetector = new ScaleGestureDetector(context,
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    @Override
+                    public boolean onScale(ScaleGestureDetector detector) {
+                        scaleRegion(detector.getScaleFactor());
+                        return true;
+                    }
+                });
+    }
+
+    public RegionOfInterest getRegion() {
+        return region;
+    }
+
+    /** Shows {@code region}, as fractions of this view, without notifying. */
+    public void setRegion(RegionOfInterest region) {
+        this.region = region;
+        invalidate();
+    }
+
+    /** Whether touches move and resize the region, or pass through. */
+    public void setEditable(boolean editable) {
+        this.editable = editable;
+    }
+
+    public void setOnRegionChangedListener(OnRegionChangedListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        if (region.isFullFrame()) {
+            return;
+        }
+        int width = getWidth();
+        int height = getHeight();
+        box.set(region.getLeft() * width, region.getTop() * height,
+                region.getRight() * width, region.getBottom() * height);
+        canvas.drawRect(0, 0, width, box.top, outsidePaint);
+        canvas.drawRect(0, box.bottom, width, height, outsidePaint);
+        canvas.drawRect(0, box.top, box.left, box.bottom, outsidePaint);
+        canvas.drawRect(box.right, box.top, width, box.bottom, outsidePaint);
+        canvas.drawRect(box, boxPaint);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!editable || getWidth() == 0 || getHeight() == 0) {
+            return false;
+        }
+        scaleDetector.onTouchEvent(event);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                lastTouchX = event.getX();
+                lastTouchY = event.getY();
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (!scaleDetector.isInProgress()
+                        && event.getPointerCount() == 1) {
+                    moveRegion((event.getX() - lastTouchX) / getWidth(),
+                            (event.getY() - lastTouchY) / getHeight());
+                }
+                lastTouchX = event.getX();
+                lastTouchY = event.getY();
+                return true;
+            case MotionEvent.ACTION_POINTER_UP:
+                // Continue dragging from the finger that stays down.
+                int remaining = event.getActionIndex() == 0 ? 1 : 0;
+                lastTouchX = event.getX(remaining);
+                lastTouchY = event.getY(remaining);
+                return true;
+            case MotionEvent.ACTION_UP:
+                performClick();
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private void moveRegion(float dx, float dy) {
+        // Keep the box inside the view instead of shrinking it at the edges.
+        dx = Math.max(-region.getLeft(), Math.min(1f - region.getRight(), dx));
+        dy = Math.max(-region.getTop(), Math.min(1f - region.getBottom(), dy));
+        updateRegion(new RegionOfInterest(region.getLeft() + dx,
+                region.getTop() + dy, region.getRight() + dx,
+                region.getBottom() + dy));
+    }
+
+    private void scaleRegion(float factor) {
+        float centreX = (region.getLeft() + region.getRight()) / 2f;
+        float centreY = (region.getTop() + region.getBottom()) / 2f;
+        float halfWidth = region.getWidth() * factor / 2f;
+        float halfHeight = region.getHeight() * factor / 2f;
+        updateRegion(new RegionOfInterest(centreX - halfWidth,
+                centreY - halfHeight, centreX + halfWidth,
+                centreY + halfHeight));
+    }
+
+    private void updateRegion(RegionOfInterest region) {
+        setRegion(region);
+        if (listener != null) {
+            listener.onRegionChanged(region);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.ArrayList;
+
+/**
+ * Puts items that finish out of order, such as frames classified by several
+ * workers at once, back in order. The oldest held item is released once no
+ * older item is still being worked on, or once it has waited long enough.
+ * Released orders only ever increase: an item that finishes after a newer one
+ * was released is late, and rejected. Not thread safe; meant to be used by
+ * the single thread that consumes the workers' output.
+ */
+public class ReorderBuffer<T> {
+
+    public interface Ordering<T> {
+        /** Items are released in increasing order of this key. */
+        long orderOf(T item);
+    }
+
+    private final Ordering<T> ordering;
+    private final int maxHeld;
+    private final long maxHoldNanos;
+    private final ArrayList<T> held;
+    private long lastReleasedOrder = Long.MIN_VALUE;
+    private boolean holding;
+    private long holdingOrder;
+    private long holdStartNanos;
+    private long lateCount;
+
+    /**
+     * @param maxHeld      items held at most; the oldest is released when
+     *                     there are more, even if it would have to wait
+     * @param maxHoldNanos longest the oldest item waits for older ones
+     */
+    public ReorderBuffer(Ordering<T> ordering, int maxHeld, long maxHoldNanos) {
+        if (maxHeld < 1) {
+            throw new IllegalArgumentException("Must hold at least one item");
+        }
+        this.ordering = ordering;
+        this.maxHeld = maxHeld;
+        this.maxHoldNanos = maxHoldNanos;
+        this.held = new ArrayList<>(2 * maxHeld);
+    }
+
+    /**
+     * Holds {@code item} until it is its turn.
+     *
+     * @return false if the item is late and was not added
+     */
+    public boolean add(T item) {
+        if (ordering.orderOf(item) <= lastReleasedOrder) {
+            lateCount++;
+            return false;
+        }
+        held.add(item);
+        return true;
+    }
+
+    /**
+     * Removes the oldest held item if it is its turn.
+     *
+     * @param oldestPendingOrder order of the oldest item still being worked
+     *                           on, or {@link Long#MAX_VALUE} if none is
+     * @return the item, or null if nothing is held or the oldest item waits
+     */
+    public T poll(long nowNanos, long oldestPendingOrder) {
+        if (held.isEmpty()) {
+            return null;
+        }
+        int oldest = 0;
+        long order = ordering.orderOf(held.get(0));
+        for (int i = 1; i < held.size(); i++) {
+            long candidate = ordering.orderOf(held.get(i));
+            if (candidate < order) {
+                oldest = i;
+                order = candidate;
+            }
+        }
+        if (oldestPendingOrder < order && held.size() <= maxHeld) {
+            if (!holding || holdingOrder != order) {
+                holding = true;
+                holdingOrder = order;
+                holdStartNanos = nowNanos;
+            }
+            if (nowNanos - holdStartNanos < maxHoldNanos) {
+                return null;
+            }
+        }
+        holding = false;
+        lastReleasedOrder = order;
+        return removeAt(oldest);
+    }
+
+    /**
+     * How long the oldest item may still wait, 0 if it is not waiting. Call
+     * after {@link #poll} returned null.
+     */
+    public long getWaitNanos(long nowNanos) {
+        if (!holding || held.isEmpty()) {
+            return 0;
+        }
+        return Math.max(0, maxHoldNanos - (nowNanos - holdStartNanos));
+    }
+
+    /** Removes any held item regardless of order, for shutting down. */
+    public T drain() {
+        return held.isEmpty() ? null : removeAt(held.size() - 1);
+    }
+
+    public int size() {
+        return held.size();
+    }
+
+    /** Items rejected by {@link #add} because a newer one was released. */
+    public long getLateCount() {
+        return lateCount;
+    }
+
+    // Order within the list does not matter, so the gap is filled from the
+    // end instead of shifting.
+    private T removeAt(int index) {
+        T item = held.get(index);
+        int last = held.size() - 1;
+        held.set(index, held.get(last));
+        held.remove(last);
+        return item;
+    }
+}
@@ -0,0 +1,117 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of classification results keyed by a
+ * {@link PerceptualHash}. A lookup matches any stored hash within a
+ * configurable Hamming distance, so near-duplicate frames reuse the stored
+ * result instead of running inference again. Entries are evicted least
+ * recently used first once their estimated size exceeds the memory budget.
+ */
+public class ResultCache<V> {
+    public static final int DEFAULT_MAX_DISTANCE = 4;
+    public static final long DEFAULT_MEMORY_BUDGET_BYTES = 64 * 1024;
+
+    public interface Weigher<V> {
+        /** Estimated number of bytes retained by {@code value}. */
+        int weigh(V value);
+    }
+
+    private final LinkedHashMap<Long, Entry<V>> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final Weigher<V> weigher;
+    private final long memoryBudgetBytes;
+    private final int maxDistance;
+    private long usedBytes;
+
+    private volatile long hits;
+    private volatile long misses;
+    private volatile long evictions;
+
+    public ResultCache(int maxDistance, long memoryBudgetBytes, Weigher<V> weigher) {
+        this.maxDistance = maxDistance;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @return the value stored for the closest hash within the maximum
+     * distance, or null on a miss
+     */
+    public synchronized V get(long hash) {
+        Entry<V> exact = entries.get(hash);
+        if (exact != null) {
+            hits++;
+            return exact.value;
+        }
+        Long bestKey = null;
+        int bestDistance = maxDistance + 1;
+        for (Long key : entries.keySet()) {
+            int distance = PerceptualHash.distance(hash, key);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestKey = key;
+            }
+        }
+        if (bestKey == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        // Touch the entry so it becomes the most recently used one.
+        return entries.get(bestKey).value;
+    }
+
+    public synchronized void put(long hash, V value) {
+        int weight = weigher.weigh(value);
+        Entry<V> previous = entries.put(hash, new Entry<>(value, weight));
+        usedBytes += weight - (previous != null ? previous.weight : 0);
+        Iterator<Map.Entry<Long, Entry<V>>> eldest =
+                entries.entrySet().iterator();
+        while (usedBytes > memoryBudgetBytes && eldest.hasNext()) {
+            Entry<V> evicted = eldest.next().getValue();
+            eldest.remove();
+            usedBytes -= evicted.weight;
+            evictions++;
+        }
+    }
+
+    /** Drops every entry, for instance after the model or threshold changed. */
+    public synchronized void invalidate() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final int weight;
+
+        Entry(V value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/** Ordering applied to classification results before they are displayed. */
+public final class ResultOrdering {
+    private ResultOrdering() {
+    }
+
+    public interface IndexOf<T> {
+        int indexOf(T item);
+    }
+
+    /**
+     * Returns up to {@code limit} items of {@code items} ordered by their
+     * label index. The input list is left untouched.
+     */
+    public static <T> List<T> firstByIndex(List<T> items,
+                                           int limit,
+                                           final IndexOf<T> indexOf) {
+        List<T> sorted = new ArrayList<>(items);
+        Collections.sort(sorted, new Comparator<T>() {
+            @Override
+            public int compare(T a, T b) {
+                int indexA = indexOf.indexOf(a);
+                int indexB = indexOf.indexOf(b);
+                return indexA < indexB ? -1 : (indexA == indexB ? 0 : 1);
+            }
+        });
+        return sorted.subList(0, Math.min(sorted.size(), limit));
+    }
+}
@@ -0,0 +1,117 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable list of result rows ready to be shown. Scores are formatted when
+ * the snapshot is built, off the UI thread, so showing it only copies
+ * strings into views.
+ */
+public final class ResultSnapshot {
+    public static final ResultSnapshot EMPTY =
+            new ResultSnapshot(Collections.<Row>emptyList());
+
+    /** Receives the row changes between two snapshots. */
+    public interface ChangeListener {
+        void onChanged(int position);
+
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+    }
+
+    /** One displayed category. */
+    public static final class Row {
+        private final String label;
+        private final int index;
+        private final String displayScore;
+
+        public Row(String label, int index, float score) {
+            this.label = label;
+            this.index = index;
+            this.displayScore = String.format(Locale.US, "%.2f", score);
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /** The score as shown, with two decimals. */
+        public String getDisplayScore() {
+            return displayScore;
+        }
+
+        /** Whether both rows look the same on screen. */
+        public boolean sameContentAs(Row other) {
+            return label.equals(other.label)
+                    && displayScore.equals(other.displayScore);
+        }
+
+        @Override
+        public String toString() {
+            return label + " " + displayScore;
+        }
+    }
+
+    private final List<Row> rows;
+
+    private ResultSnapshot(List<Row> rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Keeps up to {@code limit} of {@code rows}, ordered by label index like
+     * {@link ResultOrdering#firstByIndex}.
+     */
+    public static ResultSnapshot create(List<Row> rows, int limit) {
+        if (rows.isEmpty() || limit <= 0) {
+            return EMPTY;
+        }
+        return new ResultSnapshot(Collections.unmodifiableList(
+                new ArrayList<>(ResultOrdering.firstByIndex(rows, limit,
+                        Row::getIndex))));
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public Row get(int position) {
+        return rows.get(position);
+    }
+
+    /** Label of the first row, or null if there is none. */
+    public String getFirstLabel() {
+        return rows.isEmpty() ? null : rows.get(0).getLabel();
+    }
+
+    /**
+     * Reports the changes that turn {@code previous} into this snapshot.
+     * Rows are compared by position, since there are only a few; rows that
+     * look unchanged are not reported.
+     */
+    public void diff(ResultSnapshot previous, ChangeListener listener) {
+        int common = Math.min(previous.size(), size());
+        for (int i = 0; i < common; i++) {
+            if (!rows.get(i).sameContentAs(previous.get(i))) {
+                listener.onChanged(i);
+            }
+        }
+        if (size() > common) {
+            listener.onInserted(common, size() - common);
+        } else if (previous.size() > common) {
+            listener.onRemoved(common, previous.size() - common);
+        }
+    }
+}
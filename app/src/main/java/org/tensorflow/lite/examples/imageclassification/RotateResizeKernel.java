@@ -0,0 +1,186 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Rotates and bilinearly resizes an ARGB image into an RGB model input in a
+ * single pass. Each output pixel is mapped back through the scale and the
+ * rotation to the four source pixels around it, so only those are read and
+ * the rotated image is never materialised. Rotation and scaling are both
+ * separable, so the mapping is kept as one small table for output columns
+ * and one for output rows, computed once per rotation and source size.
+ */
+public class RotateResizeKernel {
+    private static final int WEIGHT_BITS = 8;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+    private static final int ROUNDING = 1 << (2 * WEIGHT_BITS - 1);
+
+    private final int outputWidth;
+    private final int outputHeight;
+    // One cached table per rotation (0, 90, 180, 270).
+    private final Plan[] plans = new Plan[4];
+    private long allocationCount;
+
+    public RotateResizeKernel(int outputWidth, int outputHeight) {
+        if (outputWidth <= 0 || outputHeight <= 0) {
+            throw new IllegalArgumentException("Output size must be positive");
+        }
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+    }
+
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    /** Number of tables computed so far; flat once every rotation was seen. */
+    public long getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * Writes the upright image, resized to the output size, as packed RGB
+     * bytes into {@code output}.
+     *
+     * @param argb            source pixels, row by row, as returned by
+     *                        {@code Bitmap#getPixels}
+     * @param width           width of the source image in pixels
+     * @param height          height of the source image in pixels
+     * @param rotationDegrees clockwise rotation that makes the image upright,
+     *                        one of 0, 90, 180 or 270
+     * @param output          holds at least {@code outputWidth * outputHeight
+     *                        * 3} bytes; returned rewound
+     */
+    public ByteBuffer process(int[] argb,
+                              int width,
+                              int height,
+                              int rotationDegrees,
+                              ByteBuffer output) {
+        Plan plan = plan(width, height, rotationDegrees);
+        int out = 0;
+        for (int oy = 0; oy < outputHeight; oy++) {
+            int row0 = plan.rowOffsets0[oy];
+            int row1 = plan.rowOffsets1[oy];
+            int wy = plan.rowWeights[oy];
+            for (int ox = 0; ox < outputWidth; ox++) {
+                int column0 = plan.columnOffsets0[ox];
+                int column1 = plan.columnOffsets1[ox];
+                int wx = plan.columnWeights[ox];
+                int p00 = argb[row0 + column0];
+                int p01 = argb[row0 + column1];
+                int p10 = argb[row1 + column0];
+                int p11 = argb[row1 + column1];
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    int top = ((p00 >> shift) & 0xFF) * (WEIGHT_ONE - wx)
+                            + ((p01 >> shift) & 0xFF) * wx;
+                    int bottom = ((p10 >> shift) & 0xFF) * (WEIGHT_ONE - wx)
+                            + ((p11 >> shift) & 0xFF) * wx;
+                    output.put(out++, (byte) ((top * (WEIGHT_ONE - wy)
+                            + bottom * wy + ROUNDING) >> (2 * WEIGHT_BITS)));
+                }
+            }
+        }
+        output.rewind();
+        return output;
+    }
+
+    private Plan plan(int width, int height, int rotationDegrees) {
+        int slot = (rotationDegrees / 90) & 3;
+        Plan plan = plans[slot];
+        if (plan == null || plan.width != width || plan.height != height) {
+            plan = new Plan(width, height, rotationDegrees, outputWidth,
+                    outputHeight);
+            plans[slot] = plan;
+            allocationCount++;
+        }
+        return plan;
+    }
+
+    private static final class Plan {
+        final int width;
+        final int height;
+        // The source index of an upright pixel is the sum of a term that
+        // depends only on its column and one that depends only on its row.
+        final int[] columnOffsets0;
+        final int[] columnOffsets1;
+        final int[] columnWeights;
+        final int[] rowOffsets0;
+        final int[] rowOffsets1;
+        final int[] rowWeights;
+
+        Plan(int width,
+             int height,
+             int rotationDegrees,
+             int outputWidth,
+             int outputHeight) {
+            this.width = width;
+            this.height = height;
+            boolean transposed = rotationDegrees == 90 || rotationDegrees == 270;
+            int uprightWidth = transposed ? height : width;
+            int uprightHeight = transposed ? width : height;
+            columnOffsets0 = new int[outputWidth];
+            columnOffsets1 = new int[outputWidth];
+            columnWeights = new int[outputWidth];
+            rowOffsets0 = new int[outputHeight];
+            rowOffsets1 = new int[outputHeight];
+            rowWeights = new int[outputHeight];
+            for (int ox = 0; ox < outputWidth; ox++) {
+                float x = sourceCoordinate(ox, outputWidth, uprightWidth);
+                int x0 = (int) x;
+                columnOffsets0[ox] = columnOffset(x0, rotationDegrees);
+                columnOffsets1[ox] = columnOffset(
+                        Math.min(x0 + 1, uprightWidth - 1), rotationDegrees);
+                columnWeights[ox] = Math.round((x - x0) * WEIGHT_ONE);
+            }
+            for (int oy = 0; oy < outputHeight; oy++) {
+                float y = sourceCoordinate(oy, outputHeight, uprightHeight);
+                int y0 = (int) y;
+                rowOffsets0[oy] = rowOffset(y0, rotationDegrees);
+                rowOffsets1[oy] = rowOffset(
+                        Math.min(y0 + 1, uprightHeight - 1), rotationDegrees);
+                rowWeights[oy] = Math.round((y - y0) * WEIGHT_ONE);
+            }
+        }
+
+        // Aligns pixel centres, like a half-pixel-centre bilinear resize.
+        private static float sourceCoordinate(int output,
+                                              int outputSize,
+                                              int sourceSize) {
+            float coordinate =
+                    (output + 0.5f) * sourceSize / outputSize - 0.5f;
+            return Math.max(0f, Math.min(sourceSize - 1, coordinate));
+        }
+
+        // Source index terms of upright column x and row y, with the same
+        // rotation mapping as FrameIngestor.
+        private int columnOffset(int x, int rotationDegrees) {
+            switch (rotationDegrees) {
+                case 90:
+                    return (height - 1 - x) * width;
+                case 180:
+                    return width - 1 - x;
+                case 270:
+                    return x * width;
+                default:
+                    return x;
+            }
+        }
+
+        private int rowOffset(int y, int rotationDegrees) {
+            switch (rotationDegrees) {
+                case 90:
+                    return y;
+                case 180:
+                    return (height - 1 - y) * width;
+                case 270:
+                    return width - 1 - y;
+                default:
+                    return y * width;
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cheap change detector that decides whether a camera frame differs enough
+ * from the last classified one to be worth another inference. Each frame is
+ * reduced to a small grid of luma samples, which is compared against the
+ * signature of the last frame that was let through.
+ */
+public class SceneChangeGate {
+    public static final int DEFAULT_GRID_SIZE = 16;
+    public static final float DEFAULT_THRESHOLD = 0.03f;
+    public static final int DEFAULT_MAX_SKIPPED_FRAMES = 30;
+
+    private final int gridSize;
+    private final int maxSkippedFrames;
+    private volatile float threshold;
+
+    // Only touched from the thread that calls shouldProcess().
+    private int[] reference;
+    private int[] current;
+    private boolean hasReference;
+    private int skippedInARow;
+
+    private volatile long checkedFrames;
+    private volatile long skippedFrames;
+    private volatile long checkNanos;
+
+    public SceneChangeGate() {
+        this(DEFAULT_GRID_SIZE, DEFAULT_THRESHOLD, DEFAULT_MAX_SKIPPED_FRAMES);
+    }
+
+    /**
+     * @param gridSize         number of luma samples per side of the signature
+     * @param threshold        mean absolute luma difference, from 0 to 1, below
+     *                         which a frame counts as unchanged
+     * @param maxSkippedFrames number of consecutive frames that may be skipped
+     *                         before one is let through anyway
+     */
+    public SceneChangeGate(int gridSize, float threshold, int maxSkippedFrames) {
+        this.gridSize = gridSize;
+        this.threshold = threshold;
+        this.maxSkippedFrames = maxSkippedFrames;
+        this.reference = new int[gridSize * gridSize];
+        this.current = new int[gridSize * gridSize];
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    /** Setting the threshold to 0 lets every frame through. */
+    public void setThreshold(float threshold) {
+        this.threshold = threshold;
+    }
+
+    /** Forgets the last signature so the next frame is always processed. */
+    public void reset() {
+        hasReference = false;
+        skippedInARow = 0;
+    }
+
+    /**
+     * @return true if the frame should be classified, false if the previous
+     * result still applies
+     */
+    public boolean shouldProcess(ByteBuffer rgbaPlane,
+                                 int width,
+                                 int height,
+                                 int rowStride,
+                                 int pixelStride) {
+        long start = System.nanoTime();
+        int index = 0;
+        for (int gy = 0; gy < gridSize; gy++) {
+            int y = ((2 * gy + 1) * height) / (2 * gridSize);
+            for (int gx = 0; gx < gridSize; gx++) {
+                int x = ((2 * gx + 1) * width) / (2 * gridSize);
+                int offset = y * rowStride + x * pixelStride;
+                int r = rgbaPlane.get(offset) & 0xFF;
+                int g = rgbaPlane.get(offset + 1) & 0xFF;
+                int b = rgbaPlane.get(offset + 2) & 0xFF;
+                current[index++] = (77 * r + 150 * g + 29 * b) >> 8;
+            }
+        }
+        return compareWithReference(start);
+    }
+
+    /**
+     * Same as {@link #shouldProcess} for a frame whose luma is available
+     * directly, such as the Y plane of a YUV_420_888 frame.
+     */
+    public boolean shouldProcessLuma(ByteBuffer lumaPlane,
+                                     int width,
+                                     int height,
+                                     int rowStride) {
+        long start = System.nanoTime();
+        int index = 0;
+        for (int gy = 0; gy < gridSize; gy++) {
+            int y = ((2 * gy + 1) * height) / (2 * gridSize);
+            for (int gx = 0; gx < gridSize; gx++) {
+                int x = ((2 * gx + 1) * width) / (2 * gridSize);
+                current[index++] = lumaPlane.get(y * rowStride + x) & 0xFF;
+            }
+        }
+        return compareWithReference(start);
+    }
+
+    // Decides on the signature in current, then updates the statistics.
+    private boolean compareWithReference(long start) {
+        int cells = gridSize * gridSize;
+        boolean process;
+        if (!hasReference || threshold <= 0f
+                || skippedInARow >= maxSkippedFrames) {
+            process = true;
+        } else {
+            long difference = 0;
+            for (int i = 0; i < cells; i++) {
+                difference += Math.abs(current[i] - reference[i]);
+            }
+            process = difference >= threshold * 255f * cells;
+        }
+
+        if (process) {
+            // Keep comparing against the last processed frame so slow drift
+            // still adds up to a change eventually.
+            int[] swap = reference;
+            reference = current;
+            current = swap;
+            hasReference = true;
+            skippedInARow = 0;
+        } else {
+            skippedInARow++;
+            skippedFrames++;
+        }
+        checkedFrames++;
+        checkNanos += System.nanoTime() - start;
+        return process;
+    }
+
+    public long getCheckedFrameCount() {
+        return checkedFrames;
+    }
+
+    public long getSkippedFrameCount() {
+        return skippedFrames;
+    }
+
+    /** Fraction of checked frames that were skipped. */
+    public float getSkipRate() {
+        long checked = checkedFrames;
+        return checked == 0 ? 0f : (float) skippedFrames / checked;
+    }
+
+    /** Average time spent per check, in nanoseconds. */
+    public long getAverageCheckNanos() {
+        long checked = checkedFrames;
+        return checked == 0 ? 0 : checkNanos / checked;
+    }
+}
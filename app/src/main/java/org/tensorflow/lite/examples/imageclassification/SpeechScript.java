@@ -0,0 +1,84 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lines spoken one after another, each revealed on screen word by word as it
+ * is spoken. Played by a {@link SpeechScriptPlayer}.
+ */
+public final class SpeechScript {
+    private final List<String> lines;
+
+    public SpeechScript(List<String> lines) {
+        List<String> nonEmpty = new ArrayList<>();
+        for (String line : lines) {
+            if (!line.trim().isEmpty()) {
+                nonEmpty.add(line);
+            }
+        }
+        this.lines = Collections.unmodifiableList(nonEmpty);
+    }
+
+    public static SpeechScript of(String... lines) {
+        return new SpeechScript(Arrays.asList(lines));
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    public String getLine(int line) {
+        return lines.get(line);
+    }
+
+    /** Tracks how much of one line is on screen. Not thread-safe. */
+    public static final class Reveal {
+        private final String text;
+        private int revealed;
+
+        public Reveal(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Reveals the line up to {@code end}, the end of the word being
+         * spoken, and the spaces after it.
+         *
+         * @return the newly revealed text, empty if nothing new
+         */
+        public String upTo(int end) {
+            if (revealed >= text.length()) {
+                return "";
+            }
+            end = Math.max(revealed, Math.min(end, text.length()));
+            while (end < text.length() && text.charAt(end) == ' ') {
+                end++;
+            }
+            String added = text.substring(revealed, end);
+            revealed = end;
+            return added;
+        }
+
+        /**
+         * Reveals the rest of the line, followed by the space that separates
+         * it from the next one.
+         *
+         * @return the newly revealed text, empty if the line was finished
+         */
+        public String finish() {
+            if (revealed > text.length()) {
+                return "";
+            }
+            String rest = upTo(text.length()) + " ";
+            revealed = text.length() + 1;
+            return rest;
+        }
+    }
+}
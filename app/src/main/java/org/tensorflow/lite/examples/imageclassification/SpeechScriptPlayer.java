@@ -0,0 +1,194 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+import java.util.Locale;
+
+/**
+ * Speaks a {@link SpeechScript}. Every line is queued up front with
+ * {@link TextToSpeech#QUEUE_ADD}, so lines follow each other without gaps
+ * and never cut each other off. Words are revealed as the engine reports
+ * reaching them, and the script only counts as done once its last line has
+ * finished playing. All listener calls are made on the main thread.
+ */
+public class SpeechScriptPlayer {
+    private static final String TAG = "SpeechScriptPlayer";
+
+    public interface Listener {
+        /**
+         * The engine cannot speak the default language. The script is then
+         * revealed at once and reported done.
+         */
+        void onSpeechUnavailable();
+
+        /** Text of {@code line} that has just been spoken, or started to be. */
+        void onTextRevealed(int line, String text);
+
+        void onScriptDone();
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final TextToSpeech textToSpeech;
+    private final Listener listener;
+    private boolean ready;
+    private boolean unavailable;
+    private SpeechScript script;
+    private SpeechScript.Reveal[] reveals;
+    // Utterances of a script replaced by another one are ignored.
+    private int generation;
+    private long startMillis;
+
+    /** Must be created on the main thread. */
+    public SpeechScriptPlayer(Context context, Listener listener) {
+        this.listener = listener;
+        textToSpeech = new TextToSpeech(context, this::onInit);
+    }
+
+    /**
+     * Stops the current script, if any, and plays {@code script} as soon as
+     * the engine is ready.
+     */
+    public void play(SpeechScript script) {
+        generation++;
+        this.script = script;
+        reveals = new SpeechScript.Reveal[script.size()];
+        for (int i = 0; i < reveals.length; i++) {
+            reveals[i] = new SpeechScript.Reveal(script.getLine(i));
+        }
+        if (ready) {
+            textToSpeech.stop();
+            start();
+        } else if (unavailable) {
+            revealAll();
+        }
+    }
+
+    /** Speaks {@code text} after whatever is playing, without revealing it. */
+    public void say(String text) {
+        if (ready) {
+            textToSpeech.speak(text, TextToSpeech.QUEUE_ADD, null, null);
+        }
+    }
+
+    public void shutdown() {
+        generation++;
+        script = null;
+        textToSpeech.stop();
+        textToSpeech.shutdown();
+    }
+
+    private void onInit(int status) {
+        if (status == TextToSpeech.SUCCESS) {
+            int result = textToSpeech.setLanguage(Locale.getDefault());
+            ready = result != TextToSpeech.LANG_MISSING_DATA
+                    && result != TextToSpeech.LANG_NOT_SUPPORTED;
+        }
+        if (!ready) {
+            unavailable = true;
+            listener.onSpeechUnavailable();
+            if (script != null) {
+                revealAll();
+            }
+            return;
+        }
+        textToSpeech.setOnUtteranceProgressListener(new ProgressListener());
+        if (script != null) {
+            start();
+        }
+    }
+
+    private void start() {
+        startMillis = SystemClock.elapsedRealtime();
+        if (script.size() == 0) {
+            finishScript(generation);
+            return;
+        }
+        for (int i = 0; i < script.size(); i++) {
+            textToSpeech.speak(script.getLine(i), TextToSpeech.QUEUE_ADD, null,
+                    utteranceId(generation, i));
+        }
+    }
+
+    private void revealAll() {
+        for (int i = 0; i < reveals.length; i++) {
+            listener.onTextRevealed(i, reveals[i].finish());
+        }
+        finishScript(generation);
+    }
+
+    private void reveal(int scriptGeneration, int line, int end, boolean done) {
+        if (scriptGeneration != generation) {
+            return;
+        }
+        String text = done ? reveals[line].finish() : reveals[line].upTo(end);
+        if (!text.isEmpty()) {
+            listener.onTextRevealed(line, text);
+        }
+        if (done && line == reveals.length - 1) {
+            finishScript(scriptGeneration);
+        }
+    }
+
+    private void finishScript(int scriptGeneration) {
+        if (scriptGeneration != generation || script == null) {
+            return;
+        }
+        Log.i(TAG, "Played " + script.size() + " lines in "
+                + (SystemClock.elapsedRealtime() - startMillis) + " ms");
+        script = null;
+        listener.onScriptDone();
+    }
+
+    private static String utteranceId(int generation, int line) {
+        return generation + ":" + line;
+    }
+
+    // Engine callbacks arrive on a binder thread; the utterance id carries
+    // the script generation and line so they can be replayed on the main
+    // thread.
+    private final class ProgressListener extends UtteranceProgressListener {
+        @Override
+        public void onStart(String utteranceId) {
+            // Without word ranges the line is shown as soon as it starts.
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+                post(utteranceId, Integer.MAX_VALUE, false);
+            }
+        }
+
+        @Override
+        public void onRangeStart(String utteranceId,
+                                 int start,
+                                 int end,
+                                 int frame) {
+            post(utteranceId, end, false);
+        }
+
+        @Override
+        public void onDone(String utteranceId) {
+            post(utteranceId, Integer.MAX_VALUE, true);
+        }
+
+        @Override
+        public void onError(String utteranceId) {
+            // Skip to the next line rather than stall the script.
+            post(utteranceId, Integer.MAX_VALUE, true);
+        }
+
+        private void post(String utteranceId, int end, boolean done) {
+            if (utteranceId == null) {
+                return;
+            }
+            int separator = utteranceId.indexOf(':');
+            int scriptGeneration =
+                    Integer.parseInt(utteranceId.substring(0, separator));
+            int line = Integer.parseInt(utteranceId.substring(separator + 1));
+            mainHandler.post(() -> reveal(scriptGeneration, line, end, done));
+        }
+    }
+}
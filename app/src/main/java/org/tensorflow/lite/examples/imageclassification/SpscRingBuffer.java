@@ -0,0 +1,79 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue between one producer thread and one consumer
+ * thread. When the queue is full the producer never waits: it evicts the
+ * oldest element and hands it back to the caller, so the consumer always sees
+ * the latest frames.
+ */
+public class SpscRingBuffer<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    // Next position to read. Advanced by the consumer, and by the producer
+    // when it evicts the oldest element.
+    private final AtomicLong head = new AtomicLong();
+    // Next position to write. Only advanced by the producer.
+    private final AtomicLong tail = new AtomicLong();
+
+    public SpscRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                    "Capacity must be a positive power of two");
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds {@code item}, evicting the oldest element if the queue is full.
+     * Must only be called from the producer thread.
+     *
+     * @return the evicted element, or null if nothing had to be dropped
+     */
+    public T offer(T item) {
+        T evicted = null;
+        long t = tail.get();
+        long h = head.get();
+        if (t - h == capacity() && head.compareAndSet(h, h + 1)) {
+            // If the CAS fails the consumer has just freed a slot.
+            evicted = slots.getAndSet((int) h & mask, null);
+        }
+        slots.set((int) t & mask, item);
+        tail.lazySet(t + 1);
+        return evicted;
+    }
+
+    /**
+     * Removes the oldest element. Must only be called from the consumer
+     * thread.
+     *
+     * @return the element, or null if the queue is empty
+     */
+    public T poll() {
+        while (true) {
+            long h = head.get();
+            if (h == tail.get()) {
+                return null;
+            }
+            int index = (int) h & mask;
+            T item = slots.get(index);
+            if (item != null && head.compareAndSet(h, h + 1)) {
+                // The producer may already have reused this slot after the
+                // head moved, so only clear it if it still holds our item.
+                slots.compareAndSet(index, item, null);
+                return item;
+            }
+        }
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
@@ -0,0 +1,126 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.tensorflow.lite.task.vision.classifier.ImageClassifier;
+
+/**
+ * Work started at process creation so the camera screen finds everything
+ * ready. CameraX provider acquisition and classifier preparation (native
+ * library loading, model mapping, and building and warming up the classifier
+ * the camera screen will ask for) run in parallel on background threads.
+ * The warm classifier is handed to the {@link ModelRegistry}, where the
+ * camera screen's helper picks it up.
+ */
+public final class StartupPipeline {
+    private static final String TAG = "StartupPipeline";
+    // Native library behind the Task Library's vision API.
+    private static final String TASK_VISION_LIBRARY = "task_vision_jni";
+    private static final StartupPipeline instance = new StartupPipeline();
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final CountDownLatch classifierReady = new CountDownLatch(1);
+    private volatile ClassifierConfig preparedConfig;
+
+    private StartupPipeline() {
+    }
+
+    public static StartupPipeline getInstance() {
+        return instance;
+    }
+
+    /** Starts the background work. Later calls do nothing. */
+    public void start(Context context) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        startThread("camera", () -> prepareCamera(appContext));
+        startThread("classifier", () -> prepareClassifier(appContext));
+    }
+
+    /**
+     * The configuration the startup classifier is built for: the defaults,
+     * with this device's model variant and tuning profile applied if it has
+     * them.
+     *
+     * @return the configuration, or null if it has not been resolved yet
+     */
+    @Nullable
+    public ClassifierConfig getPreparedConfig() {
+        return preparedConfig;
+    }
+
+    /**
+     * If the startup classifier for {@code config} is still being built,
+     * waits up to {@code timeoutMs} for it, so the caller can take it from
+     * the registry instead of building a second one.
+     */
+    void awaitClassifier(ClassifierConfig config, long timeoutMs)
+            throws InterruptedException {
+        if (config.forInstance().equals(preparedConfig)) {
+            classifierReady.await(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, TAG + "-" + name);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
+
+    private void prepareCamera(Context context) {
+        // Starts CameraX initialisation; the camera screen later gets the
+        // same future back from getInstance().
+        ProcessCameraProvider.getInstance(context).addListener(
+                () -> StartupTracker.mark(
+                        StartupTracker.Milestone.CAMERA_PROVIDER_READY),
+                Runnable::run);
+    }
+
+    private void prepareClassifier(Context context) {
+        try {
+            try {
+                System.loadLibrary(TASK_VISION_LIBRARY);
+            } catch (UnsatisfiedLinkError e) {
+                // The Task Library loads it itself on first use.
+                Log.w(TAG, "Could not preload " + TASK_VISION_LIBRARY, e);
+            }
+            ModelRegistry registry = ModelRegistry.getInstance(context);
+            if (registry.getModels().isEmpty()) {
+                return;
+            }
+            StartupTracker.mark(StartupTracker.Milestone.MODELS_READY);
+
+            // This device's precision variant of the default model, with
+            // the delegate and thread count tuned for it.
+            ClassifierConfig config = ImageClassifierHelper.DEFAULT_CONFIG;
+            config = config.withModel(new VariantComparison(context)
+                    .loadRecommendedModel(config.getModel()));
+            ClassifierAutoTuner.Profile profile =
+                    new ClassifierAutoTuner(context).loadProfile(config.getModel());
+            if (profile != null) {
+                config = profile.applyTo(config);
+            }
+            preparedConfig = config;
+
+            ModelRegistry.ModelInfo model = registry.getModel(config.getModel());
+            ImageClassifier classifier = registry.createClassifier(config);
+            classifier.classify(ImageClassifierHelper.syntheticFrame(
+                    model.getInputWidth(), model.getInputHeight()));
+            registry.release(config, classifier);
+            StartupTracker.mark(StartupTracker.Milestone.CLASSIFIER_WARM);
+        } catch (IOException | RuntimeException e) {
+            // The camera screen builds its classifier itself instead.
+            Log.e(TAG, "Failed to prepare the classifier", e);
+        } finally {
+            classifierReady.countDown();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.Locale;
+
+/**
+ * Timestamps of the cold start path, from process creation to the first
+ * classification shown on screen. The first result calls
+ * {@link Activity#reportFullyDrawn()}, so the startup benchmark and
+ * {@code am start -W} both see launcher-to-first-result time.
+ */
+public final class StartupTracker {
+    private static final String TAG = "StartupTracker";
+
+    public enum Milestone {
+        APPLICATION_CREATED,
+        MODELS_READY,
+        CLASSIFIER_WARM,
+        CAMERA_PROVIDER_READY,
+        CAMERA_BOUND,
+        FIRST_RESULT
+    }
+
+    private static final long[] milestoneUptimes =
+            new long[Milestone.values().length];
+    private static long processStartUptime;
+
+    private StartupTracker() {
+    }
+
+    /** Called once from {@code Application#onCreate()}. */
+    static synchronized void start() {
+        // Before N the process start time is not available; application
+        // creation is the closest point we can observe.
+        processStartUptime = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? Process.getStartUptimeMillis() : SystemClock.uptimeMillis();
+        mark(Milestone.APPLICATION_CREATED);
+    }
+
+    /** Records {@code milestone} the first time it is reached. */
+    public static synchronized void mark(Milestone milestone) {
+        if (milestoneUptimes[milestone.ordinal()] == 0) {
+            milestoneUptimes[milestone.ordinal()] = SystemClock.uptimeMillis();
+        }
+    }
+
+    /**
+     * Records the first classification result on screen, logs the startup
+     * breakdown and reports the activity as fully drawn.
+     */
+    public static void markFirstResult(Activity activity) {
+        synchronized (StartupTracker.class) {
+            if (milestoneUptimes[Milestone.FIRST_RESULT.ordinal()] != 0) {
+                return;
+            }
+            mark(Milestone.FIRST_RESULT);
+            Log.i(TAG, summary());
+        }
+        activity.reportFullyDrawn();
+    }
+
+    /**
+     * Milliseconds from process start until {@code milestone}, or -1 if it
+     * has not been reached.
+     */
+    public static synchronized long elapsedMillis(Milestone milestone) {
+        long uptime = milestoneUptimes[milestone.ordinal()];
+        return uptime == 0 ? -1 : uptime - processStartUptime;
+    }
+
+    private static String summary() {
+        StringBuilder summary = new StringBuilder(String.format(Locale.US,
+                "Launcher to first result: %d ms",
+                elapsedMillis(Milestone.FIRST_RESULT)));
+        for (Milestone milestone : Milestone.values()) {
+            summary.append(String.format(Locale.US, "\n  %s: %d ms",
+                    milestone, elapsedMillis(milestone)));
+        }
+        return summary.toString();
+    }
+}
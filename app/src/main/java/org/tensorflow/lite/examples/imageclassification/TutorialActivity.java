@@ -8,10 +8,7 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.speech.RecognizerIntent;
-import android.speech.tts.TextToSpeech;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -23,10 +20,10 @@ import androidx.core.content.ContextCompat;
 import java.util.ArrayList;
 import java.util.Locale;
 
-public class TutorialActivity extends AppCompatActivity implements TextToSpeech.OnInitListener {
+public class TutorialActivity extends AppCompatActivity implements SpeechScriptPlayer.Listener {
 
     private SharedPreferences sharedPreferences;
-    private TextToSpeech textToSpeech;
+    private SpeechScriptPlayer speechPlayer;
     private TextView textOut;
 
     private static final int REQUEST_CODE_SPEECH_INPUT = 100;
@@ -41,7 +38,7 @@ public class TutorialActivity extends AppCompatActivity implements TextToSpeech.
         setContentView(R.layout.activity_main);
 
         sharedPreferences = getPreferences(Context.MODE_PRIVATE);
-        textToSpeech = new TextToSpeech(this, this);
+        speechPlayer = new SpeechScriptPlayer(this, this);
         textOut = findViewById(R.id.textOut);
 
         checkAndRequestPermissions();
@@ -60,62 +57,40 @@ public class TutorialActivity extends AppCompatActivity implements TextToSpeech.
     }
 
     private void showTutorial() {
-        String tutorialText = "Hi, my name is Sera.";
-        speechText(tutorialText);
-        tutorialText = "Using me is simple.";
-        speechText(tutorialText);
-        tutorialText = "Once you have started the app.";
-        speechText(tutorialText);
-        tutorialText = "You point the camera over";
-        speechText(tutorialText);
-        tutorialText = "to the product you are holding.";
-        speechText(tutorialText);
-        tutorialText = "Then I will tell you what kind";
-        speechText(tutorialText);
-        tutorialText = "of product you are holding.";
-        speechText(tutorialText);
-        tutorialText = "After that,";
-        speechText(tutorialText);
-        tutorialText = "I will send you back to the start.";
-        speechText(tutorialText);
-        tutorialText = "You can then start the scan again.";
-        speechText(tutorialText);
-        tutorialText = "Shall we start?";
-        speechText(tutorialText);
-        tutorialText = "";
-        speechText(tutorialText);
+        textOut.setText("");
+        speechPlayer.play(SpeechScript.of(
+                "Hi, my name is Sera.",
+                "Using me is simple.",
+                "Once you have started the app.",
+                "You point the camera over",
+                "to the product you are holding.",
+                "Then I will tell you what kind",
+                "of product you are holding.",
+                "After that,",
+                "I will send you back to the start.",
+                "You can then start the scan again.",
+                "Shall we start?"));
     }
 
-    private void speechText(@NonNull String text) {
-        String[] words = text.split(" ");
-        final int[] currentIndex = {0};
-
-        Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                if (currentIndex[0] < words.length) {
-                    textOut.append(words[currentIndex[0]] + " ");
-                    currentIndex[0]++;
-                    new Handler(Looper.getMainLooper()).postDelayed(this, 200);
-                } else {
-                    speakText(text);
-                    if(text.equals("")){
-                        isListeningForCommand = true;
-                        promptSpeechInput();
-                        startNewActivity();
-                    } else{
-                        speakText("Error.");
-                    }
+    @Override
+    public void onTextRevealed(int line, String text) {
+        textOut.append(text);
+    }
 
-                }
-            }
-        };
-        new Handler(Looper.getMainLooper()).post(runnable);
+    @Override
+    public void onScriptDone() {
+        isListeningForCommand = true;
+        promptSpeechInput();
+        startNewActivity();
     }
 
+    @Override
+    public void onSpeechUnavailable() {
+        Toast.makeText(this, "Language not supported", Toast.LENGTH_SHORT).show();
+    }
 
     private void speakText(String text) {
-        textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, null, null);
+        speechPlayer.say(text);
     }
 
     /** @noinspection deprecation*/
@@ -131,28 +106,9 @@ public class TutorialActivity extends AppCompatActivity implements TextToSpeech.
         }
     }
 
-    @Override
-    public void onInit(int status) {
-        if (status == TextToSpeech.SUCCESS) {
-            // Optionally set language for TTS
-            Locale locale = Locale.getDefault();
-            int result = textToSpeech.setLanguage(locale);
-
-            if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
-                Toast.makeText(this, "Language not supported", Toast.LENGTH_SHORT).show();
-            }
-        } else {
-            Toast.makeText(this, "Initialization failed", Toast.LENGTH_SHORT).show();
-        }
-    }
-
     @Override
     protected void onDestroy() {
-        // Shut down the TextToSpeech engine when the activity is destroyed
-        if (textToSpeech.isSpeaking()) {
-            textToSpeech.stop();
-        }
-        textToSpeech.shutdown();
+        speechPlayer.shutdown();
         super.onDestroy();
     }
 
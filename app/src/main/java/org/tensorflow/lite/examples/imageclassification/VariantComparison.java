@@ -0,0 +1,314 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.support.image.TensorImage;
+import org.tensorflow.lite.support.label.Category;
+import org.tensorflow.lite.task.vision.classifier.Classifications;
+import org.tensorflow.lite.task.vision.classifier.ImageClassifier;
+
+/**
+ * Runs every precision variant of a model over the same images and compares
+ * their latency with how often their top result agrees with the highest
+ * precision variant. The fastest variant that agrees often enough is stored
+ * as this device's choice for the model, per device model like the
+ * {@link ClassifierAutoTuner} profiles.
+ */
+public class VariantComparison {
+    private static final String TAG = "VariantComparison";
+    private static final String PREFS_NAME = "model_variants";
+    public static final float DEFAULT_MIN_AGREEMENT = 0.95f;
+
+    /** Measurements of one variant. */
+    public static final class Row {
+        private final int model;
+        private final ModelRegistry.ModelInfo info;
+        private final long images;
+        private final long failures;
+        private final long comparedImages;
+        private final long medianMicros;
+        private final long p95Micros;
+        private final float top1Agreement;
+
+        Row(int model,
+            ModelRegistry.ModelInfo info,
+            long images,
+            long failures,
+            long comparedImages,
+            long medianMicros,
+            long p95Micros,
+            float top1Agreement) {
+            this.model = model;
+            this.info = info;
+            this.images = images;
+            this.failures = failures;
+            this.comparedImages = comparedImages;
+            this.medianMicros = medianMicros;
+            this.p95Micros = p95Micros;
+            this.top1Agreement = top1Agreement;
+        }
+
+        /** Index into {@link ModelRegistry#getModels()}. */
+        public int getModel() {
+            return model;
+        }
+
+        public ModelRegistry.ModelInfo getInfo() {
+            return info;
+        }
+
+        public long getImages() {
+            return images;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * Images the reference classified, which agreement is measured over.
+         * Images the reference failed on count for no variant.
+         */
+        public long getComparedImages() {
+            return comparedImages;
+        }
+
+        public long getMedianMicros() {
+            return medianMicros;
+        }
+
+        public long getP95Micros() {
+            return p95Micros;
+        }
+
+        /**
+         * Fraction of the compared images whose top label matches the
+         * reference's.
+         */
+        public float getTop1Agreement() {
+            return top1Agreement;
+        }
+    }
+
+    /** One row per variant, the reference first, and the recommendation. */
+    public static final class Report {
+        private final List<Row> rows;
+        private final int recommendedModel;
+
+        Report(List<Row> rows, int recommendedModel) {
+            this.rows = Collections.unmodifiableList(rows);
+            this.recommendedModel = recommendedModel;
+        }
+
+        public List<Row> getRows() {
+            return rows;
+        }
+
+        /** The recommended model index, or -1 if no variant qualified. */
+        public int getRecommendedModel() {
+            return recommendedModel;
+        }
+
+        public void writeCsv(Writer out) throws IOException {
+            out.write("model,precision,input,output,images,failures,"
+                    + "compared_images,median_us,p95_us,top1_agreement,"
+                    + "recommended\n");
+            for (Row row : rows) {
+                ModelRegistry.ModelInfo info = row.info;
+                out.write(String.format(Locale.US,
+                        "%s,%s,%s,%s,%d,%d,%d,%d,%d,%.4f,%b\n",
+                        BatchResultWriter.csvField(info.getFileName()),
+                        info.getPrecision(), info.getInput().getType(),
+                        info.getOutput().getType(), row.images, row.failures,
+                        row.comparedImages, row.medianMicros, row.p95Micros,
+                        row.top1Agreement,
+                        row.model == recommendedModel));
+            }
+            out.flush();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (Row row : rows) {
+                builder.append(String.format(Locale.US,
+                        "%s %s: median %d us, p95 %d us, top-1 agreement "
+                                + "%.1f%%%s\n",
+                        row.info.getFileName(), row.info.getPrecision(),
+                        row.medianMicros, row.p95Micros,
+                        row.top1Agreement * 100f,
+                        row.model == recommendedModel ? " (recommended)" : ""));
+            }
+            return builder.toString();
+        }
+    }
+
+    private final Context context;
+    private final SharedPreferences preferences;
+
+    public VariantComparison(Context context) {
+        this.context = context.getApplicationContext();
+        this.preferences = this.context
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * The variant stored for this device in the family of {@code model}, or
+     * {@code model} itself if none was stored or the stored one is no longer
+     * bundled.
+     */
+    public int loadRecommendedModel(int model) {
+        ModelRegistry registry = ModelRegistry.getInstance(context);
+        String stored = preferences.getString(
+                preferenceKey(registry.getModel(model)), null);
+        if (stored != null) {
+            for (int variant : registry.getVariants(model)) {
+                if (registry.getModel(variant).getFileName().equals(stored)) {
+                    return variant;
+                }
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Classifies every image of {@code source} with every variant of the
+     * model in {@code baseConfig}, using its delegate and thread count, and
+     * stores the fastest variant whose top-1 agreement with the highest
+     * precision one is at least {@code minAgreement}. Blocks until all
+     * images are done; call it from a background thread.
+     */
+    public Report compare(ClassifierConfig baseConfig,
+                          BatchClassifier.Source source,
+                          float minAgreement) throws IOException {
+        ModelRegistry registry = ModelRegistry.getInstance(context);
+        List<Integer> variants = registry.getVariants(baseConfig.getModel());
+        List<ImageClassifier> classifiers = new ArrayList<>();
+        try {
+            int inputWidth = 0;
+            int inputHeight = 0;
+            for (int variant : variants) {
+                ModelRegistry.ModelInfo info = registry.getModel(variant);
+                inputWidth = Math.max(inputWidth, info.getInputWidth());
+                inputHeight = Math.max(inputHeight, info.getInputHeight());
+                // Only the top result is compared, whatever its score.
+                classifiers.add(registry.createClassifier(baseConfig
+                        .withModel(variant).withThreshold(0f)
+                        .withMaxResults(1)));
+            }
+            return compare(source, variants, classifiers, inputWidth,
+                    inputHeight, minAgreement);
+        } finally {
+            for (ImageClassifier classifier : classifiers) {
+                classifier.close();
+            }
+        }
+    }
+
+    private Report compare(BatchClassifier.Source source,
+                           List<Integer> variants,
+                           List<ImageClassifier> classifiers,
+                           int inputWidth,
+                           int inputHeight,
+                           float minAgreement) throws IOException {
+        int count = variants.size();
+        LatencyHistogram[] latencies = new LatencyHistogram[count];
+        long[] agreements = new long[count];
+        long[] failures = new long[count];
+        for (int i = 0; i < count; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        String[] labels = new String[count];
+        long images = 0;
+        // Images the reference failed on, which leave nothing to agree with.
+        long referenceFailures = 0;
+        TensorImage tensorImage = new TensorImage(DataType.UINT8);
+
+        String name;
+        while ((name = source.next()) != null) {
+            Bitmap bitmap = BatchClassifier.decode(source, name, inputWidth,
+                    inputHeight);
+            if (bitmap == null) {
+                Log.w(TAG, "Skipping " + name + ": cannot decode");
+                continue;
+            }
+            tensorImage.load(bitmap);
+            images++;
+            boolean referenceFailed = false;
+            for (int i = 0; i < count; i++) {
+                try {
+                    long start = System.nanoTime();
+                    List<Classifications> results =
+                            classifiers.get(i).classify(tensorImage);
+                    latencies[i].record((System.nanoTime() - start) / 1000);
+                    labels[i] = topLabel(results);
+                } catch (RuntimeException e) {
+                    failures[i]++;
+                    referenceFailed |= i == 0;
+                    continue;
+                }
+                // Variants that both found nothing also agree.
+                if (!referenceFailed && (labels[0] == null
+                        ? labels[i] == null : labels[0].equals(labels[i]))) {
+                    agreements[i]++;
+                }
+            }
+            if (referenceFailed) {
+                referenceFailures++;
+            }
+            bitmap.recycle();
+        }
+        long compared = images - referenceFailures;
+
+        ModelRegistry registry = ModelRegistry.getInstance(context);
+        List<Row> rows = new ArrayList<>();
+        Row recommended = null;
+        for (int i = 0; i < count; i++) {
+            Row row = new Row(variants.get(i), registry.getModel(variants.get(i)),
+                    images, failures[i], compared,
+                    latencies[i].percentileMicros(0.50),
+                    latencies[i].percentileMicros(0.95),
+                    compared == 0 ? 0f : (float) agreements[i] / compared);
+            rows.add(row);
+            if (compared > 0 && failures[i] == 0
+                    && row.top1Agreement >= minAgreement
+                    && (recommended == null
+                    || row.medianMicros < recommended.medianMicros)) {
+                recommended = row;
+            }
+        }
+        if (recommended != null) {
+            preferences.edit()
+                    .putString(preferenceKey(recommended.info),
+                            recommended.info.getFileName())
+                    .apply();
+        }
+        Report report = new Report(rows,
+                recommended != null ? recommended.model : -1);
+        Log.i(TAG, "Compared " + compared + " of " + images + " images\n"
+                + report);
+        return report;
+    }
+
+    private static String topLabel(List<Classifications> results) {
+        if (results.isEmpty()) {
+            return null;
+        }
+        List<Category> categories = results.get(0).getCategories();
+        return categories.isEmpty() ? null : categories.get(0).getLabel();
+    }
+
+    private static String preferenceKey(ModelRegistry.ModelInfo model) {
+        return Build.MANUFACTURER + "/" + Build.MODEL + "/" + model.getFamily();
+    }
+}
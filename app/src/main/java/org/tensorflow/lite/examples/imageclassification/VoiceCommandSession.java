@@ -0,0 +1,203 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import java.util.List;
+
+/**
+ * Keeps a speech recognizer listening until one of the commands of a
+ * {@link CommandMatcher} is heard. Partial results are matched as they stream
+ * in, so a command acts as soon as it is recognized instead of after the
+ * recognizer decides the user has stopped talking. When a recognition ends
+ * without a command, the same recognizer listens again; after errors it
+ * waits first, doubling the wait after each consecutive error up to a cap.
+ * All methods must be called on one thread, the one the recognizer reports
+ * on.
+ */
+public class VoiceCommandSession<T> {
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 250;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 4000;
+
+    /** The recognizer, such as {@code android.speech.SpeechRecognizer}. */
+    public interface Recognizer {
+        void startListening();
+
+        void cancel();
+    }
+
+    /** Runs restarts later, such as on a {@code Handler}. */
+    public interface Scheduler {
+        void schedule(Runnable task, long delayMillis);
+
+        void cancel(Runnable task);
+
+        long uptimeMillis();
+    }
+
+    public interface Listener<T> {
+        /**
+         * A command was recognized; the session has stopped listening.
+         *
+         * @param latencyMillis time from the start of speech until now, or -1
+         *                      if the recognizer did not report it
+         */
+        void onCommand(CommandMatcher.Match<T> match, long latencyMillis);
+
+        /** Speech was recognized, but it was not a command. */
+        void onNotACommand(String text);
+
+        /** The recognizer cannot be used at all; the session has stopped. */
+        void onUnavailable();
+    }
+
+    private final Recognizer recognizer;
+    private final Scheduler scheduler;
+    private final CommandMatcher<T> matcher;
+    private final Listener<T> listener;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final LatencyHistogram commandLatency = new LatencyHistogram();
+    private final Runnable restart = this::listen;
+    private boolean active;
+    private int consecutiveErrors;
+    private long speechStartMillis = -1;
+
+    public VoiceCommandSession(Recognizer recognizer,
+                               Scheduler scheduler,
+                               CommandMatcher<T> matcher,
+                               Listener<T> listener) {
+        this(recognizer, scheduler, matcher, listener,
+                DEFAULT_INITIAL_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS);
+    }
+
+    public VoiceCommandSession(Recognizer recognizer,
+                               Scheduler scheduler,
+                               CommandMatcher<T> matcher,
+                               Listener<T> listener,
+                               long initialBackoffMillis,
+                               long maxBackoffMillis) {
+        this.recognizer = recognizer;
+        this.scheduler = scheduler;
+        this.matcher = matcher;
+        this.listener = listener;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /** Time from the start of speech until a command acted, per command. */
+    public LatencyHistogram getCommandLatency() {
+        return commandLatency;
+    }
+
+    /** Starts listening, unless already listening. */
+    public void start() {
+        if (active) {
+            return;
+        }
+        active = true;
+        consecutiveErrors = 0;
+        listen();
+    }
+
+    /** Stops listening and cancels any pending restart. */
+    public void stop() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        scheduler.cancel(restart);
+        recognizer.cancel();
+    }
+
+    public void onBeginningOfSpeech() {
+        speechStartMillis = scheduler.uptimeMillis();
+    }
+
+    public void onPartialResults(List<String> hypotheses) {
+        if (active && hypotheses != null && !hypotheses.isEmpty()) {
+            consecutiveErrors = 0;
+            // Only the most likely hypothesis: the others of a partial result
+            // are often guesses, and acting on one cannot be undone.
+            CommandMatcher.Match<T> match = matcher.match(hypotheses.get(0));
+            if (match != null) {
+                act(match);
+            }
+        }
+    }
+
+    public void onResults(List<String> hypotheses) {
+        if (!active) {
+            return;
+        }
+        consecutiveErrors = 0;
+        CommandMatcher.Match<T> match = hypotheses == null ? null
+                : matcher.match(hypotheses);
+        if (match != null) {
+            act(match);
+            return;
+        }
+        if (hypotheses != null && !hypotheses.isEmpty()) {
+            listener.onNotACommand(hypotheses.get(0));
+        }
+        // The listener may have stopped the session.
+        if (active) {
+            listen();
+        }
+    }
+
+    /**
+     * The recognizer ended without hearing any speech, or without words it
+     * could recognize. Listens again at once, since that is no fault of the
+     * recognizer.
+     */
+    public void onNothingHeard() {
+        if (active) {
+            listen();
+        }
+    }
+
+    /**
+     * @param recoverable false if the recognizer can never work, such as
+     *                    without the record audio permission
+     */
+    public void onError(boolean recoverable) {
+        if (!active) {
+            return;
+        }
+        if (!recoverable) {
+            active = false;
+            listener.onUnavailable();
+            return;
+        }
+        consecutiveErrors++;
+        scheduler.schedule(restart, backoffMillis(consecutiveErrors));
+    }
+
+    /** Wait before the restart after {@code errors} consecutive errors. */
+    long backoffMillis(int errors) {
+        long backoff = initialBackoffMillis;
+        for (int i = 1; i < errors && backoff < maxBackoffMillis; i++) {
+            backoff *= 2;
+        }
+        return Math.min(backoff, maxBackoffMillis);
+    }
+
+    private void listen() {
+        if (active) {
+            speechStartMillis = -1;
+            recognizer.startListening();
+        }
+    }
+
+    private void act(CommandMatcher.Match<T> match) {
+        long latencyMillis = speechStartMillis < 0 ? -1
+                : scheduler.uptimeMillis() - speechStartMillis;
+        if (latencyMillis >= 0) {
+            commandLatency.record(latencyMillis * 1000);
+        }
+        stop();
+        listener.onCommand(match, latencyMillis);
+    }
+}
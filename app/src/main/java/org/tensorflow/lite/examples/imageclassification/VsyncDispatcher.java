@@ -0,0 +1,67 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import android.view.Choreographer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands values from any thread to the UI thread at most once per display
+ * frame. Values posted faster than the display refreshes replace each other
+ * in a {@link LatestValueSlot}, so the UI thread only ever sees the latest
+ * one and its queue never fills with stale updates.
+ */
+public class VsyncDispatcher<T> implements Choreographer.FrameCallback {
+
+    public interface Receiver<T> {
+        /** Called on the UI thread with the latest value. */
+        void onValue(T value, long frameTimeNanos);
+    }
+
+    private final LatestValueSlot<T> slot = new LatestValueSlot<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Choreographer choreographer;
+    private final Receiver<T> receiver;
+
+    /** Must be created on the UI thread. */
+    public VsyncDispatcher(Receiver<T> receiver) {
+        this.choreographer = Choreographer.getInstance();
+        this.receiver = receiver;
+    }
+
+    /**
+     * Delivers {@code value} on the next display frame, unless another value
+     * is posted before then. Can be called from any thread.
+     */
+    public void post(T value) {
+        if (closed.get()) {
+            return;
+        }
+        // Only the value that fills an empty slot asks for a frame; later
+        // ones are picked up by the same callback.
+        if (slot.offer(value)) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        T value = slot.take();
+        if (value != null && !closed.get()) {
+            receiver.onValue(value, frameTimeNanos);
+        }
+    }
+
+    /** Stops delivering and drops any pending value. Call on the UI thread. */
+    public void close() {
+        closed.set(true);
+        choreographer.removeFrameCallback(this);
+        slot.clear();
+    }
+
+    public long getDeliveredCount() {
+        return slot.getDeliveredCount();
+    }
+
+    public long getDroppedCount() {
+        return slot.getDroppedCount();
+    }
+}
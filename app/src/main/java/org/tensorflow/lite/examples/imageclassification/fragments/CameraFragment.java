@@ -1,13 +1,16 @@
 package org.tensorflow.lite.examples.imageclassification.fragments;
 
+import android.content.Context;
 import android.content.res.Configuration;
-import android.graphics.Bitmap;
+import android.graphics.ImageFormat;
 import android.os.Bundle;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -21,31 +24,62 @@ import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.navigation.Navigation;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.SimpleItemAnimator;
 import com.google.common.util.concurrent.ListenableFuture;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import org.tensorflow.lite.examples.imageclassification.Announcer;
+import org.tensorflow.lite.examples.imageclassification.ClassifierAutoTuner;
+import org.tensorflow.lite.examples.imageclassification.ClassifierConfig;
 import org.tensorflow.lite.examples.imageclassification.ImageClassifierHelper;
+import org.tensorflow.lite.examples.imageclassification.MetricsRegistry;
+import org.tensorflow.lite.examples.imageclassification.ModelRegistry;
 import org.tensorflow.lite.examples.imageclassification.R;
+import org.tensorflow.lite.examples.imageclassification.RegionOfInterest;
+import org.tensorflow.lite.examples.imageclassification.ResultSnapshot;
+import org.tensorflow.lite.examples.imageclassification.StartupPipeline;
+import org.tensorflow.lite.examples.imageclassification.StartupTracker;
+import org.tensorflow.lite.examples.imageclassification.VariantComparison;
+import org.tensorflow.lite.examples.imageclassification.VsyncDispatcher;
 import org.tensorflow.lite.examples.imageclassification.databinding.FragmentCameraBinding;
 import org.tensorflow.lite.task.vision.classifier.Classifications;
 
 public class CameraFragment extends Fragment
         implements ImageClassifierHelper.ClassifierListener {
     private static final String TAG = "Image Classifier";
+    private static final long METRICS_REFRESH_MS = 1000;
+    // Positions in the region spinner.
+    private static final int REGION_FULL_FRAME = 0;
+    private static final int REGION_CENTRE = 1;
+    private static final int REGION_CUSTOM = 2;
+    private static final float CENTRE_REGION_FRACTION = 0.6f;
 
     private FragmentCameraBinding fragmentCameraBinding;
     private ImageClassifierHelper imageClassifierHelper;
-    private Bitmap bitmapBuffer;
     private ClassificationResultAdapter classificationResultsAdapter;
     private ImageAnalysis imageAnalyzer;
     private ProcessCameraProvider cameraProvider;
-    private final Object task = new Object();
 
     private ExecutorService cameraExecutor;
+    private ExecutorService tuningExecutor;
+    private ClassifierAutoTuner autoTuner;
+    private VariantComparison variantComparison;
+    private final Runnable metricsUpdater = this::updateMetricsUi;
+    // Latest result waiting for the next display frame; results that arrive
+    // faster than the display refreshes replace each other.
+    private VsyncDispatcher<DisplayedResult> resultDispatcher;
+    private Announcer announcer;
+    private RegionOfInterest customRegion = RegionOfInterest.centerCrop(0.5f);
+    // Whether the analyzer receives YUV frames and converts only the pixels
+    // the model needs, instead of full resolution RGBA frames from CameraX.
+    private boolean yuvAnalysis;
+    // Whether frame analysis is paused so the tuner has the device to itself.
+    private boolean autoTuning;
 
     @Nullable
     @Override
@@ -73,28 +107,86 @@ public class CameraFragment extends Fragment
     public void onDestroyView() {
         super.onDestroyView();
 
-        // Shut down our background executor
+        // Stops result delivery first. Returns at once; a frame still being
+        // classified hands its classifier back when it finishes.
+        imageClassifierHelper.closeModel();
+        fragmentCameraBinding.getRoot().removeCallbacks(metricsUpdater);
+        resultDispatcher.close();
+        announcer.close();
+
+        // Shut down our background executors
         cameraExecutor.shutdown();
-        synchronized (task) {
-            imageClassifierHelper.clearImageClassifier();
-        }
+        tuningExecutor.shutdownNow();
     }
 
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         cameraExecutor = Executors.newSingleThreadExecutor();
+        tuningExecutor = Executors.newSingleThreadExecutor();
+        resultDispatcher = new VsyncDispatcher<>((result, frameTimeNanos) ->
+                showResult(result));
         imageClassifierHelper = ImageClassifierHelper.create(requireContext()
                 , this);
-        classificationResultsAdapter = new ClassificationResultAdapter(requireContext());
+        // Ask for the configuration the startup pipeline has already built
+        // and warmed up, so the first frame does not wait for a classifier.
+        ClassifierConfig prepared =
+                StartupPipeline.getInstance().getPreparedConfig();
+        if (prepared != null) {
+            imageClassifierHelper.applyConfig(prepared);
+        }
+        classificationResultsAdapter = new ClassificationResultAdapter();
+        announcer = new Announcer(requireContext(),
+                imageClassifierHelper.getMetrics());
+        // Speech is not needed until the first result; connecting to the
+        // engine can wait until the camera screen is up and idle.
+        Looper.myQueue().addIdleHandler(() -> {
+            if (getView() != null) {
+                announcer.start();
+                announcer.useModel(
+                        imageClassifierHelper.getConfig().getModel());
+            }
+            return false;
+        });
         classificationResultsAdapter
                 .updateAdapterSize(imageClassifierHelper.getMaxResults());
         fragmentCameraBinding.recyclerviewResults
                 .setAdapter(classificationResultsAdapter);
         fragmentCameraBinding.recyclerviewResults
                 .setLayoutManager(new LinearLayoutManager(requireContext()));
+        // Changed rows are rebound in place rather than cross-faded.
+        ((SimpleItemAnimator) fragmentCameraBinding.recyclerviewResults
+                .getItemAnimator()).setSupportsChangeAnimations(false);
         fragmentCameraBinding.viewFinder.post(this::setUpCamera);
         initBottomSheetControls();
+        if (prepared != null) {
+            fragmentCameraBinding.bottomSheetLayout.spinnerDelegate
+                    .setSelection(prepared.getDelegate(), false);
+            updateControlsUi();
+        }
+        view.postDelayed(metricsUpdater, METRICS_REFRESH_MS);
+
+        // Start with the precision variant, delegate and thread count picked
+        // for this device, if previous runs stored them. The startup pipeline
+        // may not have resolved the variant before this screen opened.
+        autoTuner = new ClassifierAutoTuner(requireContext());
+        variantComparison = new VariantComparison(requireContext());
+        int startModel = imageClassifierHelper.getConfig().getModel();
+        tuningExecutor.execute(() -> {
+            try {
+                int model = variantComparison.loadRecommendedModel(startModel);
+                if (model != startModel) {
+                    view.post(() -> applyModel(startModel, model));
+                }
+                ClassifierAutoTuner.Profile profile =
+                        autoTuner.loadProfile(model);
+                if (profile != null) {
+                    view.post(() -> applyTuningProfile(profile));
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Failed to load stored device choices", e);
+            }
+        });
     }
 
     @Override
@@ -160,6 +252,22 @@ public class CameraFragment extends Fragment
                         updateControlsUi();
                     }
                 });
+        fragmentCameraBinding.bottomSheetLayout.poolSizeMinus
+                .setOnClickListener(view -> {
+                    int poolSize = imageClassifierHelper.getPoolSize();
+                    if (poolSize > 1) {
+                        imageClassifierHelper.setPoolSize(poolSize - 1);
+                        updateControlsUi();
+                    }
+                });
+        fragmentCameraBinding.bottomSheetLayout.poolSizePlus
+                .setOnClickListener(view -> {
+                    int poolSize = imageClassifierHelper.getPoolSize();
+                    if (poolSize < ImageClassifierHelper.MAX_POOL_SIZE) {
+                        imageClassifierHelper.setPoolSize(poolSize + 1);
+                        updateControlsUi();
+                    }
+                });
         fragmentCameraBinding.bottomSheetLayout.spinnerDelegate
                 .setSelection(0, false);
         fragmentCameraBinding.bottomSheetLayout.spinnerDelegate
@@ -178,8 +286,82 @@ public class CameraFragment extends Fragment
                         // no-op
                     }
                 });
+        // Listing the models reads the metadata of every bundled model, so
+        // the spinner is filled once that is done off the main thread.
+        fragmentCameraBinding.bottomSheetLayout.spinnerModel.setEnabled(false);
+        Context context = requireContext();
+        View root = fragmentCameraBinding.getRoot();
+        tuningExecutor.execute(() -> {
+            List<String> modelNames = loadModelNames(context);
+            root.post(() -> {
+                if (getView() != null) {
+                    showModels(modelNames);
+                }
+            });
+        });
+        fragmentCameraBinding.bottomSheetLayout.spinnerRegion
+                .setSelection(REGION_FULL_FRAME, false);
+        fragmentCameraBinding.bottomSheetLayout.spinnerRegion
+                .setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+                    @Override
+                    public void onItemSelected(AdapterView<?> adapterView,
+                                               View view,
+                                               int position,
+                                               long id) {
+                        selectRegion(position);
+                    }
+
+                    @Override
+                    public void onNothingSelected(AdapterView<?> adapterView) {
+                        // no-op
+                    }
+                });
+        fragmentCameraBinding.regionOverlay.setOnRegionChangedListener(
+                region -> {
+                    customRegion = region;
+                    applyRegionOfInterest(region);
+                });
+        // The region is relative to the preview, whose shape can change.
+        fragmentCameraBinding.viewFinder.addOnLayoutChangeListener(
+                (view, left, top, right, bottom, oldLeft, oldTop, oldRight,
+                 oldBottom) -> applyRegionOfInterest(
+                        imageClassifierHelper.getRegionOfInterest()));
+        fragmentCameraBinding.bottomSheetLayout.switchYuvAnalysis
+                .setOnCheckedChangeListener((button, checked) -> {
+                    yuvAnalysis = checked;
+                    if (cameraProvider != null) {
+                        bindCameraUseCases();
+                    }
+                });
+        fragmentCameraBinding.bottomSheetLayout.autoTuneButton
+                .setOnClickListener(view -> runAutoTune());
+        }
+
+    private static List<String> loadModelNames(Context context) {
+        ModelRegistry registry = ModelRegistry.getInstance(context);
+        List<String> modelNames = new ArrayList<>();
+        for (int i = 0; i < registry.getModels().size(); i++) {
+            ModelRegistry.ModelInfo model = registry.getModel(i);
+            // Precision variants of one model share its name.
+            modelNames.add(registry.getVariants(i).size() > 1
+                    ? context.getString(R.string.format_model_variant,
+                            model.getName(), model.getPrecision().name()
+                                    .toLowerCase(Locale.US))
+                    : model.getName());
+        }
+        return modelNames;
+    }
+
+    private void showModels(List<String> modelNames) {
+        ArrayAdapter<String> modelAdapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, modelNames);
+        modelAdapter.setDropDownViewResource(
+                android.R.layout.simple_spinner_dropdown_item);
         fragmentCameraBinding.bottomSheetLayout.spinnerModel
-                .setSelection(0, false);
+                .setAdapter(modelAdapter);
+        fragmentCameraBinding.bottomSheetLayout.spinnerModel
+                .setSelection(imageClassifierHelper.getConfig().getModel(),
+                        false);
         fragmentCameraBinding.bottomSheetLayout.spinnerModel
                 .setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
                     @Override
@@ -187,8 +369,12 @@ public class CameraFragment extends Fragment
                                                View view,
                                                int position,
                                                long id) {
+                        int previous =
+                                imageClassifierHelper.getConfig().getModel();
                         imageClassifierHelper.setCurrentModel(position);
+                        announcer.useModel(position);
                         updateControlsUi();
+                        resolveVariant(previous, position);
                     }
 
                     @Override
@@ -196,7 +382,167 @@ public class CameraFragment extends Fragment
 
                     }
                 });
+        fragmentCameraBinding.bottomSheetLayout.spinnerModel.setEnabled(true);
+    }
+
+    // Switching to another model starts on the variant stored for this
+    // device; picking another variant of the same model is left as chosen.
+    private void resolveVariant(int previous, int model) {
+        ModelRegistry registry = ModelRegistry.getInstance(requireContext());
+        if (registry.getVariants(model).contains(previous)) {
+            return;
         }
+        View view = requireView();
+        tuningExecutor.execute(() -> {
+            int variant = variantComparison.loadRecommendedModel(model);
+            if (variant != model) {
+                view.post(() -> applyModel(model, variant));
+            }
+        });
+    }
+
+    // Replaces model with variant unless another model was picked meanwhile.
+    private void applyModel(int model, int variant) {
+        if (getView() == null
+                || imageClassifierHelper.getConfig().getModel() != model) {
+            return;
+        }
+        imageClassifierHelper.setCurrentModel(variant);
+        announcer.useModel(variant);
+        if (fragmentCameraBinding.bottomSheetLayout.spinnerModel
+                .getAdapter() != null) {
+            fragmentCameraBinding.bottomSheetLayout.spinnerModel
+                    .setSelection(variant, false);
+        }
+        updateControlsUi();
+    }
+
+    private void selectRegion(int position) {
+        RegionOfInterest region;
+        switch (position) {
+            case REGION_CENTRE:
+                region = RegionOfInterest.centerCrop(CENTRE_REGION_FRACTION);
+                break;
+            case REGION_CUSTOM:
+                region = customRegion;
+                break;
+            default:
+                region = RegionOfInterest.FULL_FRAME;
+        }
+        fragmentCameraBinding.regionOverlay.setRegion(region);
+        fragmentCameraBinding.regionOverlay
+                .setEditable(position == REGION_CUSTOM);
+        fragmentCameraBinding.regionOverlay.setVisibility(
+                position == REGION_FULL_FRAME ? View.GONE : View.VISIBLE);
+        applyRegionOfInterest(region);
+    }
+
+    private void applyRegionOfInterest(RegionOfInterest region) {
+        View viewFinder = fragmentCameraBinding.viewFinder;
+        // The full frame includes what the preview crops away; any other
+        // region is drawn over the preview and mapped to the frame.
+        float viewAspectRatio =
+                region.isFullFrame() || viewFinder.getHeight() == 0 ? 0f
+                        : (float) viewFinder.getWidth() / viewFinder.getHeight();
+        imageClassifierHelper.setRegionOfInterest(region, viewAspectRatio);
+    }
+
+    private void runAutoTune() {
+        fragmentCameraBinding.bottomSheetLayout.autoTuneButton.setEnabled(false);
+        fragmentCameraBinding.bottomSheetLayout.autoTuneStatus
+                .setText(R.string.label_auto_tune_running);
+        // Live inference would compete with the candidates for the CPU and
+        // GPU and skew their latencies.
+        autoTuning = true;
+        if (imageAnalyzer != null) {
+            imageAnalyzer.clearAnalyzer();
+        }
+        View root = fragmentCameraBinding.getRoot();
+        tuningExecutor.execute(() -> {
+            ClassifierAutoTuner.Profile profile = null;
+            try {
+                profile = autoTuner.tune(imageClassifierHelper.getConfig(),
+                        null);
+            } catch (IOException e) {
+                Log.e(TAG, "Auto-tune failed", e);
+            }
+            ClassifierAutoTuner.Profile result = profile;
+            root.post(() -> {
+                autoTuning = false;
+                if (getView() == null) {
+                    return;
+                }
+                if (imageAnalyzer != null) {
+                    imageAnalyzer.setAnalyzer(cameraExecutor,
+                            this::classifyImage);
+                }
+                fragmentCameraBinding.bottomSheetLayout.autoTuneButton
+                        .setEnabled(true);
+                if (result == null) {
+                    fragmentCameraBinding.bottomSheetLayout.autoTuneStatus
+                            .setText(R.string.label_auto_tune);
+                    return;
+                }
+                fragmentCameraBinding.bottomSheetLayout.autoTuneStatus
+                        .setText(getString(R.string.label_auto_tune_result,
+                                result.getP95Micros() / 1000));
+                applyTuningProfile(result);
+            });
+        });
+    }
+
+    private void applyTuningProfile(ClassifierAutoTuner.Profile profile) {
+        if (getView() == null) {
+            return;
+        }
+        imageClassifierHelper.applyConfig(
+                profile.applyTo(imageClassifierHelper.getConfig()));
+        fragmentCameraBinding.bottomSheetLayout.spinnerDelegate
+                .setSelection(profile.getDelegate(), false);
+        updateControlsUi();
+    }
+
+    // Shows the statistics of the last refresh interval and starts a new one.
+    private void updateMetricsUi() {
+        MetricsRegistry.Snapshot snapshot =
+                imageClassifierHelper.getMetrics().snapshot(true);
+        fragmentCameraBinding.bottomSheetLayout.fpsVal.setText(
+                String.format(Locale.US, "%.1f / %.1f",
+                        snapshot.getResultFps(), snapshot.getCameraFps()));
+        fragmentCameraBinding.bottomSheetLayout.droppedFramesVal.setText(
+                String.valueOf(snapshot.getDroppedFrames()));
+        fragmentCameraBinding.bottomSheetLayout.shownResultsVal.setText(
+                getString(R.string.format_shown_results,
+                        resultDispatcher.getDeliveredCount(),
+                        resultDispatcher.getDroppedCount()));
+        if (snapshot.getTimeToFirstResultMicros() >= 0) {
+            fragmentCameraBinding.bottomSheetLayout.firstResultVal.setText(
+                    getString(R.string.format_first_result,
+                            snapshot.getTimeToFirstResultMicros() / 1000,
+                            Math.max(0, snapshot.getWarmupMicros()) / 1000));
+        }
+
+        String[] titles =
+                getResources().getStringArray(R.array.metrics_stage_titles);
+        StringBuilder latencies = new StringBuilder();
+        for (MetricsRegistry.Stage stage : MetricsRegistry.Stage.values()) {
+            MetricsRegistry.StageStats stats = snapshot.getStage(stage);
+            if (latencies.length() > 0) {
+                latencies.append('\n');
+            }
+            latencies.append(String.format(Locale.US,
+                    "%-12s %7.1f %7.1f %7.1f",
+                    titles[stage.ordinal()],
+                    stats.getP50Micros() / 1000f,
+                    stats.getP95Micros() / 1000f,
+                    stats.getP99Micros() / 1000f));
+        }
+        fragmentCameraBinding.bottomSheetLayout.stageLatencyVal
+                .setText(latencies);
+        fragmentCameraBinding.getRoot()
+                .postDelayed(metricsUpdater, METRICS_REFRESH_MS);
+    }
+
     private void updateControlsUi() {
         fragmentCameraBinding.bottomSheetLayout.maxResultsValue
                 .setText(String.valueOf(imageClassifierHelper.getMaxResults()));
@@ -205,9 +551,8 @@ public class CameraFragment extends Fragment
                         imageClassifierHelper.getThreshold()));
         fragmentCameraBinding.bottomSheetLayout.threadsValue
                 .setText(String.valueOf(imageClassifierHelper.getNumThreads()));
-        synchronized (task) {
-            imageClassifierHelper.clearImageClassifier();
-        }
+        fragmentCameraBinding.bottomSheetLayout.poolSizeValue
+                .setText(String.valueOf(imageClassifierHelper.getPoolSize()));
     }
     private void setUpCamera() {
         ListenableFuture<ProcessCameraProvider> cameraProviderFuture =
@@ -236,17 +581,13 @@ public class CameraFragment extends Fragment
                 .setTargetAspectRatio(AspectRatio.RATIO_4_3)
                 .setTargetRotation(fragmentCameraBinding.viewFinder.getDisplay().getRotation())
                 .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888)
+                .setOutputImageFormat(yuvAnalysis
+                        ? ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888
+                        : ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888)
                 .build();
-        imageAnalyzer.setAnalyzer(cameraExecutor, image -> {
-            if (bitmapBuffer == null) {
-                bitmapBuffer = Bitmap.createBitmap(
-                        image.getWidth(),
-                        image.getHeight(),
-                        Bitmap.Config.ARGB_8888);
-            }
-            classifyImage(image);
-        });
+        if (!autoTuning) {
+            imageAnalyzer.setAnalyzer(cameraExecutor, this::classifyImage);
+        }
         cameraProvider.unbindAll();
 
         try {
@@ -259,35 +600,100 @@ public class CameraFragment extends Fragment
             preview.setSurfaceProvider(
                     fragmentCameraBinding.viewFinder.getSurfaceProvider()
             );
+            StartupTracker.mark(StartupTracker.Milestone.CAMERA_BOUND);
         } catch (Exception exc) {
             Log.e(TAG, "Use case binding failed", exc);
         }
     }
 
     private void classifyImage(@NonNull ImageProxy image) {
-        bitmapBuffer.copyPixelsFromBuffer(image.getPlanes()[0].getBuffer());
-
-        int imageRotation = image.getImageInfo().getRotationDegrees();
-        image.close();
-        image.close();
-        synchronized (task) {
-            imageClassifierHelper.classifyAndClose(bitmapBuffer, imageRotation);
+        // Only the capture stage runs on the analyzer thread: the plane is
+        // read straight into a pipeline frame and the camera buffer goes back
+        // to CameraX before preprocessing and inference start.
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        try {
+            if (image.getFormat() == ImageFormat.YUV_420_888) {
+                imageClassifierHelper.submitYuvFrame(
+                        planes[0].getBuffer(),
+                        planes[1].getBuffer(),
+                        planes[2].getBuffer(),
+                        image.getWidth(),
+                        image.getHeight(),
+                        planes[0].getRowStride(),
+                        planes[1].getRowStride(),
+                        planes[1].getPixelStride(),
+                        image.getImageInfo().getRotationDegrees(),
+                        image.getImageInfo().getTimestamp());
+            } else {
+                imageClassifierHelper.submitFrame(
+                        planes[0].getBuffer(),
+                        image.getWidth(),
+                        image.getHeight(),
+                        planes[0].getRowStride(),
+                        planes[0].getPixelStride(),
+                        image.getImageInfo().getRotationDegrees(),
+                        image.getImageInfo().getTimestamp());
+            }
+        } finally {
+            image.close();
         }
     }
     @Override
     public void onError(String error) {
         requireActivity().runOnUiThread(() -> {
             Toast.makeText(requireContext(), error, Toast.LENGTH_SHORT).show();
-            classificationResultsAdapter.updateResults(new ArrayList<>());
+            classificationResultsAdapter.updateResults(ResultSnapshot.EMPTY);
         });
     }
 
     @Override
-    public void onResults(List<Classifications> results, long inferenceTime) {
-        requireActivity().runOnUiThread(() -> {
-            classificationResultsAdapter.updateResults(results.get(0).getCategories());
-            fragmentCameraBinding.bottomSheetLayout.inferenceTimeVal
-                    .setText(String.format(Locale.US, "%d ms", inferenceTime));
-        });
+    public void onResults(List<Classifications> results,
+                          long inferenceTime,
+                          long frameTimestampNanos) {
+        // Select and format everything here, on the pipeline thread, so the
+        // UI thread only copies the prepared strings into views.
+        ResultSnapshot snapshot = classificationResultsAdapter
+                .prepare(results.get(0).getCategories());
+        String inferenceTimeText =
+                String.format(Locale.US, "%d ms", inferenceTime);
+        announcer.report(snapshot.getFirstLabel());
+        resultDispatcher.post(new DisplayedResult(snapshot, inferenceTimeText,
+                System.nanoTime(), frameTimestampNanos));
+    }
+
+    // Runs on the UI thread once per display frame, with the latest result.
+    private void showResult(DisplayedResult result) {
+        if (getView() == null) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        classificationResultsAdapter.updateResults(result.snapshot);
+        fragmentCameraBinding.bottomSheetLayout.inferenceTimeVal
+                .setText(result.inferenceTimeText);
+        MetricsRegistry metrics = imageClassifierHelper.getMetrics();
+        metrics.recordSince(MetricsRegistry.Stage.UI_THREAD, startNanos);
+        metrics.recordSince(MetricsRegistry.Stage.UI_RENDER,
+                result.postedNanos);
+        metrics.recordSince(MetricsRegistry.Stage.END_TO_END,
+                result.frameTimestampNanos);
+        StartupTracker.markFirstResult(requireActivity());
+    }
+
+    // A result prepared on the pipeline thread, waiting for a display frame.
+    private static final class DisplayedResult {
+        final ResultSnapshot snapshot;
+        final String inferenceTimeText;
+        final long postedNanos;
+        final long frameTimestampNanos;
+
+        DisplayedResult(ResultSnapshot snapshot,
+                        String inferenceTimeText,
+                        long postedNanos,
+                        long frameTimestampNanos) {
+            this.snapshot = snapshot;
+            this.inferenceTimeText = inferenceTimeText;
+            this.postedNanos = postedNanos;
+            this.frameTimestampNanos = frameTimestampNanos;
+        }
     }
 }
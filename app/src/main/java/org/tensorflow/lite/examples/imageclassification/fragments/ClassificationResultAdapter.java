@@ -1,65 +1,61 @@
 package org.tensorflow.lite.examples.imageclassification.fragments;
 
-import android.annotation.SuppressLint;
-import android.content.Context;
-import android.os.Build;
-import android.speech.tts.TextToSpeech;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
+import org.tensorflow.lite.examples.imageclassification.ResultSnapshot;
 import org.tensorflow.lite.examples.imageclassification.databinding.ItemClassificationResultBinding;
 import org.tensorflow.lite.support.label.Category;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Locale;
 
 public class ClassificationResultAdapter
         extends RecyclerView.Adapter<ClassificationResultAdapter.ViewHolder> {
-    private static final String NO_VALUE = "--";
-    private final List<Category> categories = new ArrayList<>();
-    private int adapterSize = 0;
-    private final Context context;
-    private TextToSpeech textToSpeech;
-    private String lastSpokenLabel = "";
+    private ResultSnapshot snapshot = ResultSnapshot.EMPTY;
+    private volatile int adapterSize = 0;
 
-    public ClassificationResultAdapter(Context context) {
-        this.context = context;
+    private final ResultSnapshot.ChangeListener changeListener =
+            new ResultSnapshot.ChangeListener() {
+                @Override
+                public void onChanged(int position) {
+                    notifyItemChanged(position);
+                }
 
-        textToSpeech = new TextToSpeech(context, status -> {
-            if (status == TextToSpeech.SUCCESS) {
-                int result = textToSpeech.setLanguage(Locale.US);
-                if (result == TextToSpeech.LANG_MISSING_DATA ||
-                        result == TextToSpeech.LANG_NOT_SUPPORTED) {
-                    Log.e("TextToSpeech", "Language is not supported.");
+                @Override
+                public void onInserted(int position, int count) {
+                    notifyItemRangeInserted(position, count);
                 }
-            } else {
-                Log.e("TextToSpeech", "Initialization failed.");
-            }
-        });
-    }
 
-    @SuppressLint("NotifyDataSetChanged")
-    public void updateResults(List<Category> categories) {
-        List<Category> sortedCategories = new ArrayList<>(categories);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            Collections.sort(sortedCategories, Comparator.comparingInt(Category::getIndex));
-        }
-        this.categories.clear();
-        int min = Math.min(sortedCategories.size(), adapterSize);
-        this.categories.addAll(sortedCategories.subList(0, min));
-        if (!this.categories.isEmpty() && this.categories.get(0) != null) {
-            String currentLabel = this.categories.get(0).getLabel();
-            if (!currentLabel.equals(lastSpokenLabel)) {
-                speak(currentLabel);
-                lastSpokenLabel = currentLabel;
-            }
+                @Override
+                public void onRemoved(int position, int count) {
+                    notifyItemRangeRemoved(position, count);
+                }
+            };
+
+    /**
+     * Selects and formats the rows to show for {@code categories}. Safe to
+     * call from any thread; meant to run on the thread that produced the
+     * results, before they are handed to the UI thread.
+     */
+    public ResultSnapshot prepare(List<Category> categories) {
+        List<ResultSnapshot.Row> rows = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            rows.add(new ResultSnapshot.Row(category.getLabel(),
+                    category.getIndex(), category.getScore()));
         }
-        notifyDataSetChanged();
+        return ResultSnapshot.create(rows, adapterSize);
+    }
+
+    /**
+     * Shows {@code snapshot}, rebinding only the rows that look different
+     * from the ones on screen. Must be called on the UI thread.
+     */
+    public void updateResults(ResultSnapshot snapshot) {
+        ResultSnapshot previous = this.snapshot;
+        this.snapshot = snapshot;
+        snapshot.diff(previous, changeListener);
     }
 
     public void updateAdapterSize(int size) {
@@ -76,13 +72,14 @@ public class ClassificationResultAdapter
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        holder.bind(categories.get(position));
+        holder.bind(snapshot.get(position));
     }
 
     @Override
     public int getItemCount() {
-        return categories.size();
+        return snapshot.size();
     }
+
     public class ViewHolder extends RecyclerView.ViewHolder {
         private final TextView tvLabel;
         private final TextView tvScore;
@@ -93,22 +90,9 @@ public class ClassificationResultAdapter
             tvScore = binding.tvScore;
         }
 
-        public void bind(Category category) {
-            if (category != null) {
-                tvLabel.setText(category.getLabel());
-                tvScore.setText(String.format(Locale.US, "%.2f", category.getScore()));
-            } else {
-                tvLabel.setText(NO_VALUE);
-                tvScore.setText(NO_VALUE);
-            }
-        }
-    }
-
-    private void speak(String text) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, null, null);
-        } else {
-            textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, null);
+        public void bind(ResultSnapshot.Row row) {
+            tvLabel.setText(row.getLabel());
+            tvScore.setText(row.getDisplayScore());
         }
     }
 }
@@ -0,0 +1,41 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class AnnouncementPolicyTest {
+    private static final long DEBOUNCE = 300;
+
+    @Test
+    public void announcesALabelOnceItIsStable() {
+        AnnouncementPolicy policy = new AnnouncementPolicy(DEBOUNCE);
+
+        policy.report("cat", 0);
+        assertNull(policy.poll(0));
+        assertEquals(DEBOUNCE - 100, policy.nanosUntilDue(100));
+        assertEquals("cat", policy.poll(DEBOUNCE));
+        assertNull(policy.poll(DEBOUNCE + 1000));
+        assertEquals(-1, policy.nanosUntilDue(DEBOUNCE + 1000));
+    }
+
+    @Test
+    public void ignoresLabelsThatFlicker() {
+        AnnouncementPolicy policy = new AnnouncementPolicy(DEBOUNCE);
+        policy.report("cat", 0);
+        assertEquals("cat", policy.poll(DEBOUNCE));
+
+        // A one-frame dog, then the cat again, says nothing.
+        policy.report("dog", 1000);
+        assertNull(policy.poll(1030));
+        policy.report("cat", 1033);
+        assertNull(policy.poll(2000));
+        policy.report(null, 2000);
+        policy.report("cat", 2100);
+        assertNull(policy.poll(3000));
+
+        policy.report("dog", 3000);
+        assertNull(policy.poll(3000 + DEBOUNCE - 1));
+        assertEquals("dog", policy.poll(3000 + DEBOUNCE));
+    }
+}
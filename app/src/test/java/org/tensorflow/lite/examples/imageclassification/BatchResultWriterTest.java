@@ -0,0 +1,48 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import org.junit.Test;
+
+public class BatchResultWriterTest {
+
+    @Test
+    public void csvQuotesFieldsWithSeparators() {
+        assertEquals("plain.jpg", BatchResultWriter.csvField("plain.jpg"));
+        assertEquals("\"a,b.jpg\"", BatchResultWriter.csvField("a,b.jpg"));
+        assertEquals("\"say \"\"hi\"\"\"",
+                BatchResultWriter.csvField("say \"hi\""));
+    }
+
+    @Test
+    public void jsonEscapesControlCharacters() {
+        assertEquals("\"a\\\"b\\\\c\\n\\u0001\"",
+                BatchResultWriter.jsonString("a\"b\\c\n\u0001"));
+        assertEquals("null", BatchResultWriter.jsonString(null));
+    }
+
+    @Test
+    public void writesOneLinePerImage() throws IOException {
+        StringWriter csv = new StringWriter();
+        try (BatchResultWriter writer = BatchResultWriter.create(
+                BatchResultWriter.Format.CSV, csv)) {
+            writer.writeResult("empty.jpg", Collections.emptyList(), 1500);
+            writer.writeError("broken.jpg", "Cannot decode image");
+        }
+        assertEquals("image,rank,label,display_name,score,inference_us,error\n"
+                        + "empty.jpg,,,,,1500,\n"
+                        + "broken.jpg,,,,,,Cannot decode image\n",
+                csv.toString());
+
+        StringWriter jsonLines = new StringWriter();
+        try (BatchResultWriter writer = BatchResultWriter.create(
+                BatchResultWriter.Format.JSON_LINES, jsonLines)) {
+            writer.writeError("broken.jpg", "Cannot decode image");
+        }
+        assertEquals("{\"image\":\"broken.jpg\","
+                        + "\"error\":\"Cannot decode image\"}\n",
+                jsonLines.toString());
+    }
+}
@@ -0,0 +1,201 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ClassifierLifecycleTest {
+
+    private static final int STRESS_ROUNDS = 200;
+    private static final int STRESS_INFERENCE_THREADS = 3;
+
+    @Test
+    public void movesThroughBuildsAndClose() {
+        ClassifierLifecycle<FakeClassifier> lifecycle = newLifecycle();
+        assertEquals(ClassifierLifecycle.State.IDLE, lifecycle.getState());
+        assertNull(lifecycle.acquire());
+
+        assertTrue(lifecycle.beginBuild());
+        assertFalse(lifecycle.beginBuild());
+        assertEquals(ClassifierLifecycle.State.BUILDING, lifecycle.getState());
+        lifecycle.cancelBuild();
+        assertEquals(ClassifierLifecycle.State.IDLE, lifecycle.getState());
+
+        FakeClassifier first = new FakeClassifier();
+        assertTrue(lifecycle.beginBuild());
+        assertTrue(lifecycle.publish(first));
+        assertEquals(ClassifierLifecycle.State.READY, lifecycle.getState());
+        assertSame(first, lifecycle.peek());
+
+        assertTrue(lifecycle.beginBuild());
+        assertEquals(ClassifierLifecycle.State.RECONFIGURING,
+                lifecycle.getState());
+        lifecycle.cancelBuild();
+        assertEquals(ClassifierLifecycle.State.READY, lifecycle.getState());
+
+        assertTrue(lifecycle.beginBuild());
+        assertTrue(lifecycle.close());
+        assertFalse(lifecycle.close());
+        assertEquals(1, first.closes.get());
+        assertFalse(lifecycle.beginBuild());
+
+        // The build that was running when the lifecycle closed.
+        FakeClassifier late = new FakeClassifier();
+        assertFalse(lifecycle.publish(late));
+        assertEquals(1, late.closes.get());
+        assertNull(lifecycle.acquire());
+        assertEquals(ClassifierLifecycle.State.CLOSING, lifecycle.getState());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void publishingNeedsABuild() {
+        newLifecycle().publish(new FakeClassifier());
+    }
+
+    @Test
+    public void leasedClassifierOutlivesReplacementAndClose() {
+        ClassifierLifecycle<FakeClassifier> lifecycle = newLifecycle();
+        FakeClassifier first = new FakeClassifier();
+        lifecycle.beginBuild();
+        lifecycle.publish(first);
+
+        ClassifierLifecycle.Lease<FakeClassifier> lease = lifecycle.acquire();
+        FakeClassifier second = new FakeClassifier();
+        lifecycle.beginBuild();
+        lifecycle.publish(second);
+        assertSame(second, lifecycle.peek());
+        assertEquals(0, first.closes.get());
+        lease.get().infer();
+        lease.release();
+        assertEquals(1, first.closes.get());
+
+        lease = lifecycle.acquire();
+        assertEquals(1, lifecycle.getActiveLeaseCount());
+        lifecycle.close();
+        assertEquals(0, second.closes.get());
+        lease.get().infer();
+        lease.release();
+        assertEquals(1, second.closes.get());
+        assertEquals(0, lifecycle.getActiveLeaseCount());
+    }
+
+    @Test
+    public void concurrentReconfigureAndCloseFreeEveryClassifierOnce()
+            throws InterruptedException {
+        for (int round = 0; round < STRESS_ROUNDS; round++) {
+            // Close after a varying number of builds, so it lands in every
+            // state: before the first build, during one and between them.
+            runStressRound(round % 8);
+        }
+    }
+
+    private void runStressRound(int buildsBeforeClose)
+            throws InterruptedException {
+        ClassifierLifecycle<FakeClassifier> lifecycle = newLifecycle();
+        ConcurrentLinkedQueue<FakeClassifier> built =
+                new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Throwable> failures =
+                new ConcurrentLinkedQueue<>();
+        AtomicInteger builds = new AtomicInteger();
+        AtomicBoolean closed = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        // Two threads race to reconfigure, like the UI and the tuner do.
+        for (int i = 0; i < 2; i++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (!closed.get()) {
+                    if (lifecycle.beginBuild()) {
+                        FakeClassifier classifier = new FakeClassifier();
+                        built.add(classifier);
+                        builds.incrementAndGet();
+                        lifecycle.publish(classifier);
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < STRESS_INFERENCE_THREADS; i++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (!closed.get()) {
+                    ClassifierLifecycle.Lease<FakeClassifier> lease =
+                            lifecycle.acquire();
+                    if (lease != null) {
+                        lease.get().infer();
+                        lease.release();
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            await(start);
+            while (builds.get() < buildsBeforeClose) {
+                Thread.yield();
+            }
+            lifecycle.close();
+            lifecycle.close();
+            closed.set(true);
+        }));
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(ClassifierLifecycle.State.CLOSING, lifecycle.getState());
+        assertEquals(0, lifecycle.getActiveLeaseCount());
+        for (FakeClassifier classifier : built) {
+            assertEquals(1, classifier.closes.get());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            fail();
+        }
+    }
+
+    private static <C extends AutoCloseable> ClassifierLifecycle<C>
+            newLifecycle() {
+        return new ClassifierLifecycle<>(classifier -> {
+            try {
+                classifier.close();
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    // Stands in for a native classifier, which must not run once freed.
+    private static final class FakeClassifier implements AutoCloseable {
+        final AtomicInteger closes = new AtomicInteger();
+
+        void infer() {
+            if (closes.get() != 0) {
+                throw new IllegalStateException("Used after close");
+            }
+        }
+
+        @Override
+        public void close() {
+            closes.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+public class FrameIngestorTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+
+    @Test
+    public void matchesBitmapPathForEveryRotation() {
+        int[] argb = randomPixels(WIDTH, HEIGHT);
+        ByteBuffer plane = toRgbaPlane(argb, WIDTH, HEIGHT, WIDTH * 4);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            assertMatchesBitmapPath(argb, plane, WIDTH * 4, rotation);
+        }
+    }
+
+    @Test
+    public void honoursRowStridePadding() {
+        int[] argb = randomPixels(WIDTH, HEIGHT);
+        int rowStride = WIDTH * 4 + 12;
+        ByteBuffer plane = toRgbaPlane(argb, WIDTH, HEIGHT, rowStride);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            assertMatchesBitmapPath(argb, plane, rowStride, rotation);
+        }
+    }
+
+    @Test
+    public void downscalesBilinearly() {
+        // One row of greys 0, 40, 80, 120 halved: each output pixel sits
+        // half way between two source pixels.
+        int[] argb = {grey(0), grey(40), grey(80), grey(120)};
+        ByteBuffer plane = toRgbaPlane(argb, 4, 1, 16);
+
+        ByteBuffer out = new FrameIngestor(2, 1)
+                .ingest(plane, 4, 1, 16, 4, 0);
+
+        assertEquals(20, out.get(0) & 0xFF);
+        assertEquals(100, out.get(3) & 0xFF);
+    }
+
+    @Test
+    public void downscalesLikeStillImagePathForEveryRotation() {
+        // An uneven ratio, like 640x480 to 224x224, so the bilinear weights
+        // vary from pixel to pixel.
+        int width = 40;
+        int height = 30;
+        int[] argb = randomPixels(width, height);
+        ByteBuffer plane = toRgbaPlane(argb, width, height, width * 4 + 8);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            ByteBuffer expected = new RotateResizeKernel(14, 11).process(argb,
+                    width, height, rotation,
+                    ByteBuffer.allocateDirect(14 * 11 * 3));
+
+            ByteBuffer out = new FrameIngestor(14, 11).ingest(plane, width,
+                    height, width * 4 + 8, 4, rotation);
+
+            assertEquals("rotation " + rotation, expected, out);
+        }
+    }
+
+    @Test
+    public void leavesSourcePositionUntouched() {
+        int[] argb = randomPixels(WIDTH, HEIGHT);
+        ByteBuffer plane = toRgbaPlane(argb, WIDTH, HEIGHT, WIDTH * 4);
+        plane.position(5);
+
+        new FrameIngestor(WIDTH, HEIGHT)
+                .ingest(plane, WIDTH, HEIGHT, WIDTH * 4, 4, 90);
+
+        assertEquals(5, plane.position());
+    }
+
+    @Test
+    public void steadyStateIngestionDoesNotAllocate() {
+        int[] argb = randomPixels(WIDTH, HEIGHT);
+        ByteBuffer plane = toRgbaPlane(argb, WIDTH, HEIGHT, WIDTH * 4);
+        FrameIngestor ingestor = new FrameIngestor(4, 4);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            ingestor.ingest(plane, WIDTH, HEIGHT, WIDTH * 4, 4, rotation);
+        }
+        long warmedUp = ingestor.getAllocationCount();
+
+        for (int frame = 0; frame < 100; frame++) {
+            ingestor.ingest(plane, WIDTH, HEIGHT, WIDTH * 4, 4,
+                    (frame % 4) * 90);
+        }
+
+        assertEquals(warmedUp, ingestor.getAllocationCount());
+    }
+
+    @Test
+    public void geometryChangeRebuildsSamplingTable() {
+        FrameIngestor ingestor = new FrameIngestor(4, 4);
+        ByteBuffer plane = toRgbaPlane(randomPixels(WIDTH, HEIGHT), WIDTH,
+                HEIGHT, WIDTH * 4 + 8);
+        ingestor.ingest(plane, WIDTH, HEIGHT, WIDTH * 4, 4, 0);
+        long before = ingestor.getAllocationCount();
+
+        ingestor.ingest(plane, WIDTH, HEIGHT, WIDTH * 4 + 8, 4, 0);
+
+        assertEquals(before + 1, ingestor.getAllocationCount());
+    }
+
+    @Test
+    public void cropsRegionOfInterestInUprightSpaceForEveryRotation() {
+        int[] argb = randomPixels(WIDTH, HEIGHT);
+        ByteBuffer plane = toRgbaPlane(argb, WIDTH, HEIGHT, WIDTH * 4);
+        // Bottom left quarter of the upright image; off centre, so a wrong
+        // rotation mapping picks different pixels.
+        RegionOfInterest region = new RegionOfInterest(0f, 0.5f, 0.5f, 1f);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            boolean transposed = rotation == 90 || rotation == 270;
+            int uprightWidth = transposed ? HEIGHT : WIDTH;
+            int uprightHeight = transposed ? WIDTH : HEIGHT;
+            int cropWidth = uprightWidth / 2;
+            int cropHeight = uprightHeight / 2;
+            int[] upright = rotateClockwise(argb, WIDTH, HEIGHT, rotation);
+            FrameIngestor ingestor = new FrameIngestor(cropWidth, cropHeight);
+            ingestor.setRegionOfInterest(region);
+
+            ByteBuffer out = ingestor.ingest(plane, WIDTH, HEIGHT, WIDTH * 4, 4,
+                    rotation);
+
+            for (int y = 0; y < cropHeight; y++) {
+                for (int x = 0; x < cropWidth; x++) {
+                    assertPixel(upright[(cropHeight + y) * uprightWidth + x],
+                            out, y * cropWidth + x);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void regionChangeRebuildsSamplingTable() {
+        FrameIngestor ingestor = new FrameIngestor(4, 4);
+        ByteBuffer plane = toRgbaPlane(randomPixels(WIDTH, HEIGHT), WIDTH,
+                HEIGHT, WIDTH * 4);
+        ingestor.ingest(plane, WIDTH, HEIGHT, WIDTH * 4, 4, 0);
+        long before = ingestor.getAllocationCount();
+
+        ingestor.setRegionOfInterest(RegionOfInterest.centerCrop(0.5f));
+        ingestor.ingest(plane, WIDTH, HEIGHT, WIDTH * 4, 4, 0);
+        ingestor.setRegionOfInterest(RegionOfInterest.centerCrop(0.5f));
+        ingestor.ingest(plane, WIDTH, HEIGHT, WIDTH * 4, 4, 0);
+
+        assertEquals(before + 1, ingestor.getAllocationCount());
+    }
+
+    @Test
+    public void yuvMatchesReferenceForEveryRotation() {
+        // Odd sizes and strides, semi-planar chroma.
+        YuvFrame frame = new YuvFrame(7, 5, 11, 9, 2);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            boolean transposed = rotation == 90 || rotation == 270;
+            assertMatchesYuvReference(frame, rotation, transposed ? 5 : 7,
+                    transposed ? 7 : 5);
+        }
+    }
+
+    @Test
+    public void yuvDownscalesPlanarFramesWithOddStrides() {
+        YuvFrame frame = new YuvFrame(13, 9, 17, 7, 1);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            assertMatchesYuvReference(frame, rotation, 4, 3);
+        }
+    }
+
+    @Test
+    public void steadyStateYuvIngestionDoesNotAllocate() {
+        YuvFrame frame = new YuvFrame(WIDTH, HEIGHT, WIDTH, WIDTH, 2);
+        FrameIngestor ingestor = new FrameIngestor(4, 4);
+        ByteBuffer out = ByteBuffer.allocateDirect(4 * 4 * 3);
+        frame.ingest(ingestor, 90, out);
+        long warmedUp = ingestor.getAllocationCount();
+
+        for (int i = 0; i < 100; i++) {
+            frame.ingest(ingestor, 90, out);
+        }
+
+        assertEquals(warmedUp, ingestor.getAllocationCount());
+    }
+
+    // Converts the whole frame at full resolution with floating point
+    // BT.601, then rotates and resizes it like a still image: the
+    // straightforward path that the fused conversion must agree with.
+    private static void assertMatchesYuvReference(YuvFrame frame,
+                                                  int rotation,
+                                                  int outWidth,
+                                                  int outHeight) {
+        int[] argb = new int[frame.width * frame.height];
+        for (int y = 0; y < frame.height; y++) {
+            for (int x = 0; x < frame.width; x++) {
+                int chroma = (y / 2) * frame.chromaWidth + x / 2;
+                argb[y * frame.width + x] = referenceYuvToArgb(
+                        frame.luma[y * frame.width + x], frame.cb[chroma],
+                        frame.cr[chroma]);
+            }
+        }
+        ByteBuffer expected = new RotateResizeKernel(outWidth, outHeight)
+                .process(argb, frame.width, frame.height, rotation,
+                        ByteBuffer.allocateDirect(outWidth * outHeight * 3));
+
+        ByteBuffer out = frame.ingest(new FrameIngestor(outWidth, outHeight),
+                rotation, ByteBuffer.allocateDirect(outWidth * outHeight * 3));
+
+        for (int i = 0; i < outWidth * outHeight; i++) {
+            int expectedRgb = ((expected.get(i * 3) & 0xFF) << 16)
+                    | ((expected.get(i * 3 + 1) & 0xFF) << 8)
+                    | (expected.get(i * 3 + 2) & 0xFF);
+            assertPixelWithin(expectedRgb, out, i, 1);
+        }
+    }
+
+    private static int referenceYuvToArgb(int y, int u, int v) {
+        double cb = u - 128;
+        double cr = v - 128;
+        int r = clamp((int) Math.round(y + 1.402 * cr));
+        int g = clamp((int) Math.round(y - 0.344136 * cb - 0.714136 * cr));
+        int b = clamp((int) Math.round(y + 1.772 * cb));
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private static int grey(int value) {
+        return 0xFF000000 | (value << 16) | (value << 8) | value;
+    }
+
+    private static void assertPixelWithin(int expectedArgb,
+                                          ByteBuffer rgb,
+                                          int index,
+                                          int tolerance) {
+        for (int channel = 0; channel < 3; channel++) {
+            int expected = (expectedArgb >> (16 - 8 * channel)) & 0xFF;
+            int actual = rgb.get(index * 3 + channel) & 0xFF;
+            assertTrue("pixel " + index + " channel " + channel + ": expected "
+                            + expected + " but was " + actual,
+                    Math.abs(expected - actual) <= tolerance);
+        }
+    }
+
+    private static void assertMatchesBitmapPath(int[] argb,
+                                                ByteBuffer plane,
+                                                int rowStride,
+                                                int rotation) {
+        boolean transposed = rotation == 90 || rotation == 270;
+        int outWidth = transposed ? HEIGHT : WIDTH;
+        int outHeight = transposed ? WIDTH : HEIGHT;
+        int[] expected = rotateClockwise(argb, WIDTH, HEIGHT, rotation);
+
+        ByteBuffer out = new FrameIngestor(outWidth, outHeight)
+                .ingest(plane, WIDTH, HEIGHT, rowStride, 4, rotation);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertPixel(expected[i], out, i);
+        }
+    }
+
+    private static void assertPixel(int expectedArgb, ByteBuffer rgb, int index) {
+        assertEquals((expectedArgb >> 16) & 0xFF, rgb.get(index * 3) & 0xFF);
+        assertEquals((expectedArgb >> 8) & 0xFF, rgb.get(index * 3 + 1) & 0xFF);
+        assertEquals(expectedArgb & 0xFF, rgb.get(index * 3 + 2) & 0xFF);
+    }
+
+    // Mirrors Rot90Op(-rotation / 90) applied to the bitmap filled by
+    // copyPixelsFromBuffer: each source pixel is moved to its rotated place.
+    private static int[] rotateClockwise(int[] argb,
+                                         int width,
+                                         int height,
+                                         int rotation) {
+        int[] pixels = argb.clone();
+        int w = width;
+        int h = height;
+        for (int turns = rotation / 90; turns > 0; turns--) {
+            int[] rotated = new int[pixels.length];
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    rotated[x * h + (h - 1 - y)] = pixels[y * w + x];
+                }
+            }
+            int swap = w;
+            w = h;
+            h = swap;
+            pixels = rotated;
+        }
+        return pixels;
+    }
+
+    private static int[] randomPixels(int width, int height) {
+        Random random = new Random(42);
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return argb;
+    }
+
+    /** Random 4:2:0 frame laid out in planes with the given strides. */
+    private static final class YuvFrame {
+        final int width;
+        final int height;
+        final int chromaWidth;
+        final int yRowStride;
+        final int uvRowStride;
+        final int uvPixelStride;
+        final int[] luma;
+        final int[] cb;
+        final int[] cr;
+        final ByteBuffer yPlane;
+        final ByteBuffer uPlane;
+        final ByteBuffer vPlane;
+
+        YuvFrame(int width,
+                 int height,
+                 int yRowStride,
+                 int uvRowStride,
+                 int uvPixelStride) {
+            this.width = width;
+            this.height = height;
+            this.chromaWidth = (width + 1) / 2;
+            this.yRowStride = yRowStride;
+            this.uvRowStride = uvRowStride;
+            this.uvPixelStride = uvPixelStride;
+            int chromaHeight = (height + 1) / 2;
+            Random random = new Random(7);
+            luma = randomSamples(random, width * height);
+            cb = randomSamples(random, chromaWidth * chromaHeight);
+            cr = randomSamples(random, chromaWidth * chromaHeight);
+
+            // Padding bytes are filled with noise so reading them shows up.
+            yPlane = ByteBuffer.allocateDirect(yRowStride * height);
+            fill(random, yPlane);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    yPlane.put(y * yRowStride + x,
+                            (byte) luma[y * width + x]);
+                }
+            }
+            int chromaSize = (chromaHeight - 1) * uvRowStride
+                    + (chromaWidth - 1) * uvPixelStride + 1;
+            uPlane = ByteBuffer.allocateDirect(chromaSize);
+            vPlane = ByteBuffer.allocateDirect(chromaSize);
+            fill(random, uPlane);
+            fill(random, vPlane);
+            for (int y = 0; y < chromaHeight; y++) {
+                for (int x = 0; x < chromaWidth; x++) {
+                    int offset = y * uvRowStride + x * uvPixelStride;
+                    uPlane.put(offset, (byte) cb[y * chromaWidth + x]);
+                    vPlane.put(offset, (byte) cr[y * chromaWidth + x]);
+                }
+            }
+        }
+
+        ByteBuffer ingest(FrameIngestor ingestor,
+                          int rotation,
+                          ByteBuffer out) {
+            return ingestor.ingestYuv(yPlane, uPlane, vPlane, width, height,
+                    yRowStride, uvRowStride, uvPixelStride, rotation, out);
+        }
+
+        private static int[] randomSamples(Random random, int count) {
+            int[] samples = new int[count];
+            for (int i = 0; i < count; i++) {
+                samples[i] = random.nextInt(256);
+            }
+            return samples;
+        }
+
+        private static void fill(Random random, ByteBuffer buffer) {
+            for (int i = 0; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) random.nextInt(256));
+            }
+        }
+    }
+
+    private static ByteBuffer toRgbaPlane(int[] argb,
+                                          int width,
+                                          int height,
+                                          int rowStride) {
+        ByteBuffer plane = ByteBuffer.allocateDirect(rowStride * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[y * width + x];
+                int offset = y * rowStride + x * 4;
+                plane.put(offset, (byte) (pixel >> 16));
+                plane.put(offset + 1, (byte) (pixel >> 8));
+                plane.put(offset + 2, (byte) pixel);
+                plane.put(offset + 3, (byte) (pixel >>> 24));
+            }
+        }
+        return plane;
+    }
+}
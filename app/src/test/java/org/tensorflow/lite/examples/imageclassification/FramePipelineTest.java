@@ -0,0 +1,78 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class FramePipelineTest {
+
+    private static final int FRAMES = 300;
+    private static final int LANES = 3;
+
+    @Test
+    public void parallelStageDeliversInOrderAndAccountsForEveryFrame()
+            throws InterruptedException {
+        List<Long> delivered = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong recycled = new AtomicLong();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        FramePipeline<Long> pipeline = new FramePipeline<>("test",
+                Arrays.<FramePipeline.Stage<Long>>asList(
+                        frame -> true,
+                        frame -> {
+                            int now = running.incrementAndGet();
+                            maxRunning.accumulateAndGet(now, Math::max);
+                            // Uneven work, so lanes finish out of order.
+                            sleep(new Random(frame).nextInt(4));
+                            running.decrementAndGet();
+                            return true;
+                        },
+                        frame -> {
+                            delivered.add(frame);
+                            return true;
+                        }),
+                frame -> recycled.incrementAndGet(),
+                1, LANES, frame -> frame, 20_000_000L);
+        pipeline.setActiveLanes(LANES);
+        pipeline.start();
+
+        for (long frame = 0; frame < FRAMES; frame++) {
+            pipeline.submit(frame);
+            sleep(1);
+        }
+        sleep(50);
+        pipeline.stop(1000);
+
+        assertEquals(FRAMES, recycled.get());
+        for (int i = 1; i < delivered.size(); i++) {
+            assertTrue(delivered.get(i - 1) < delivered.get(i));
+        }
+        assertEquals(FRAMES, delivered.size()
+                + pipeline.getDroppedFrameCount()
+                + pipeline.getLateFrameCount());
+        assertTrue(maxRunning.get() > 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parallelStageNeedsAStageToMergeInto() {
+        new FramePipeline<Long>("test",
+                Arrays.<FramePipeline.Stage<Long>>asList(frame -> true),
+                frame -> { },
+                0, 2, frame -> frame, 0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
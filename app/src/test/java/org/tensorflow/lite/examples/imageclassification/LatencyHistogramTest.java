@@ -0,0 +1,60 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10; micros++) {
+            histogram.record(micros);
+        }
+
+        assertEquals(5, histogram.percentileMicros(0.5));
+        assertEquals(10, histogram.percentileMicros(1.0));
+        assertEquals(10, histogram.getCount());
+    }
+
+    @Test
+    public void percentilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros);
+        }
+
+        assertWithin(50_000, histogram.percentileMicros(0.50));
+        assertWithin(95_000, histogram.percentileMicros(0.95));
+        assertWithin(99_000, histogram.percentileMicros(0.99));
+        assertEquals(100_000, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        for (long micros = 0; micros < 1 << 20; micros += 7) {
+            int bucket = LatencyHistogram.bucketIndex(micros);
+            assertTrue(LatencyHistogram.bucketUpperBound(bucket) >= micros);
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.bucketUpperBound(bucket - 1) < micros);
+            }
+        }
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1234);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentileMicros(0.5));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected * 0.07);
+    }
+}
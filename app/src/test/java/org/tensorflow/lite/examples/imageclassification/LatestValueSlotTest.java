@@ -0,0 +1,57 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class LatestValueSlotTest {
+
+    @Test
+    public void keepsOnlyTheLatestValue() {
+        LatestValueSlot<String> slot = new LatestValueSlot<>();
+
+        assertTrue(slot.offer("a"));
+        assertFalse(slot.offer("b"));
+        assertFalse(slot.offer("c"));
+        assertEquals("c", slot.take());
+        assertNull(slot.take());
+        assertTrue(slot.offer("d"));
+        slot.clear();
+
+        assertNull(slot.take());
+        assertEquals(1, slot.getDeliveredCount());
+        assertEquals(3, slot.getDroppedCount());
+    }
+
+    @Test
+    public void everyValueIsEitherDeliveredOrDropped() throws Exception {
+        final LatestValueSlot<Long> slot = new LatestValueSlot<>();
+        final int values = 200_000;
+        final AtomicLong wakeUps = new AtomicLong();
+        Thread producer = new Thread(() -> {
+            for (long i = 0; i < values; i++) {
+                if (slot.offer(i)) {
+                    wakeUps.incrementAndGet();
+                }
+            }
+        });
+        producer.start();
+        long last = -1;
+        while (producer.isAlive() || last < values - 1) {
+            Long value = slot.take();
+            if (value != null) {
+                assertTrue(value > last);
+                last = value;
+            }
+        }
+        producer.join();
+
+        assertEquals(values,
+                slot.getDeliveredCount() + slot.getDroppedCount());
+        // One wake-up per value that found the slot empty.
+        assertEquals(slot.getDeliveredCount(), wakeUps.get());
+    }
+}
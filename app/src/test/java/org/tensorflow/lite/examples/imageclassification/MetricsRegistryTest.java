@@ -0,0 +1,34 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void resetStartsANewWindow() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        long start = System.nanoTime();
+        metrics.snapshot(start, true);
+        for (int i = 0; i < 30; i++) {
+            metrics.frameArrived();
+            metrics.frameDelivered();
+            metrics.record(MetricsRegistry.Stage.INFERENCE, 2000);
+        }
+        metrics.frameDropped();
+
+        MetricsRegistry.Snapshot first =
+                metrics.snapshot(start + 1_000_000_000L, true);
+        MetricsRegistry.Snapshot second =
+                metrics.snapshot(start + 2_000_000_000L, true);
+
+        assertEquals(30f, first.getResultFps(), 0.01f);
+        assertEquals(2000, first.getStage(MetricsRegistry.Stage.INFERENCE)
+                .getP50Micros());
+        assertEquals(0f, second.getResultFps(), 0.01f);
+        assertEquals(0, second.getStage(MetricsRegistry.Stage.INFERENCE)
+                .getCount());
+        assertEquals(30, second.getDeliveredFrames());
+        assertEquals(1, second.getDroppedFrames());
+    }
+}
@@ -0,0 +1,37 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class ModelPrecisionTest {
+
+    @Test
+    public void readsPrecisionFromFileNameSuffix() {
+        assertEquals(ModelPrecision.FLOAT16,
+                ModelPrecision.of("mobilenet_fp16.tflite", false));
+        assertEquals(ModelPrecision.INT8,
+                ModelPrecision.of("mobilenet_int8.tflite", false));
+        assertEquals(ModelPrecision.FLOAT32,
+                ModelPrecision.of("mobilenet_float32.tflite", false));
+        assertEquals(ModelPrecision.FLOAT32,
+                ModelPrecision.of("mobilenet.tflite", false));
+    }
+
+    @Test
+    public void quantizedTensorsMeanInt8WhateverTheName() {
+        assertEquals(ModelPrecision.INT8,
+                ModelPrecision.of("model.tflite", true));
+        assertEquals(ModelPrecision.INT8,
+                ModelPrecision.of("mobilenet_fp16.tflite", true));
+    }
+
+    @Test
+    public void variantsShareTheirFamily() {
+        assertEquals("mobilenet", ModelPrecision.familyOf("mobilenet.tflite"));
+        assertEquals("mobilenet",
+                ModelPrecision.familyOf("mobilenet_FP16.tflite"));
+        assertEquals("mobilenet",
+                ModelPrecision.familyOf("mobilenet_quant.tflite"));
+        assertEquals("model", ModelPrecision.familyOf("model.tflite"));
+    }
+}
@@ -0,0 +1,52 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class PerceptualHashTest {
+    private static final int SIZE = 32;
+
+    @Test
+    public void similarImagesHaveCloseHashes() {
+        PerceptualHash hasher = new PerceptualHash();
+        long original = hasher.compute(gradient(0), SIZE, SIZE);
+        long brighter = hasher.compute(gradient(3), SIZE, SIZE);
+
+        assertEquals(0, PerceptualHash.distance(original, brighter));
+    }
+
+    @Test
+    public void differentImagesHaveDistantHashes() {
+        PerceptualHash hasher = new PerceptualHash();
+        long original = hasher.compute(gradient(0), SIZE, SIZE);
+        long mirrored = hasher.compute(mirroredGradient(), SIZE, SIZE);
+
+        assertTrue(PerceptualHash.distance(original, mirrored) > 32);
+    }
+
+    private static ByteBuffer gradient(int offset) {
+        ByteBuffer rgb = ByteBuffer.allocate(SIZE * SIZE * 3);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                byte value = (byte) (x * 6 + offset);
+                int i = (y * SIZE + x) * 3;
+                rgb.put(i, value).put(i + 1, value).put(i + 2, value);
+            }
+        }
+        return rgb;
+    }
+
+    private static ByteBuffer mirroredGradient() {
+        ByteBuffer rgb = ByteBuffer.allocate(SIZE * SIZE * 3);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                byte value = (byte) ((SIZE - 1 - x) * 6);
+                int i = (y * SIZE + x) * 3;
+                rgb.put(i, value).put(i + 1, value).put(i + 2, value);
+            }
+        }
+        return rgb;
+    }
+}
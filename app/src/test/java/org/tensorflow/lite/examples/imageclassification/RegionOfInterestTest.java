@@ -0,0 +1,84 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RegionOfInterestTest {
+    private static final float EPSILON = 1e-6f;
+
+    @Test
+    public void clampsEdgesToTheFrame() {
+        RegionOfInterest region = new RegionOfInterest(-0.5f, -1f, 1.5f, 0.5f);
+
+        assertRegion(0f, 0f, 1f, 0.5f, region);
+        assertTrue(new RegionOfInterest(-1f, -1f, 2f, 2f).isFullFrame());
+    }
+
+    @Test
+    public void growsTinyRegionsToMinimumSizeInsideTheFrame() {
+        RegionOfInterest centre = new RegionOfInterest(0.5f, 0.5f, 0.5f, 0.5f);
+        assertRegion(0.5f - RegionOfInterest.MIN_SIZE / 2f,
+                0.5f - RegionOfInterest.MIN_SIZE / 2f,
+                0.5f + RegionOfInterest.MIN_SIZE / 2f,
+                0.5f + RegionOfInterest.MIN_SIZE / 2f, centre);
+
+        // Grown inwards at the edge, so it stays within the frame.
+        RegionOfInterest corner = new RegionOfInterest(1f, 0f, 1f, 0.01f);
+        assertRegion(1f - RegionOfInterest.MIN_SIZE, 0f, 1f,
+                RegionOfInterest.MIN_SIZE, corner);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvertedRegions() {
+        new RegionOfInterest(0.6f, 0f, 0.4f, 1f);
+    }
+
+    @Test
+    public void centerCropKeepsTheMiddleOfEachSide() {
+        assertRegion(0.25f, 0.25f, 0.75f, 0.75f,
+                RegionOfInterest.centerCrop(0.5f));
+        assertTrue(RegionOfInterest.centerCrop(1f).isFullFrame());
+        assertEquals(RegionOfInterest.centerCrop(0.5f),
+                RegionOfInterest.centerCrop(0.5f));
+    }
+
+    @Test
+    public void mapsPreviewRegionToVisiblePartOfWideFrame() {
+        // A 4:3 frame filling a 1:1 view shows only the left three quarters.
+        RegionOfInterest frameRegion = new RegionOfInterest(0.5f, 0f, 1f, 1f)
+                .viewToFrame(1f, 4f / 3f);
+
+        assertRegion(0.375f, 0f, 0.75f, 1f, frameRegion);
+    }
+
+    @Test
+    public void mapsPreviewRegionToVisiblePartOfTallFrame() {
+        // A 3:4 frame filling a 1:1 view shows only the top three quarters,
+        // since FILL_START aligns it to the top.
+        RegionOfInterest frameRegion =
+                RegionOfInterest.centerCrop(0.5f).viewToFrame(1f, 3f / 4f);
+
+        assertRegion(0.25f, 0.1875f, 0.75f, 0.5625f, frameRegion);
+    }
+
+    @Test
+    public void leavesRegionAloneWhenViewIsNotLaidOut() {
+        RegionOfInterest region = RegionOfInterest.centerCrop(0.5f);
+
+        assertSame(region, region.viewToFrame(0f, 4f / 3f));
+        assertEquals(region, region.viewToFrame(4f / 3f, 4f / 3f));
+    }
+
+    private static void assertRegion(float left,
+                                     float top,
+                                     float right,
+                                     float bottom,
+                                     RegionOfInterest region) {
+        assertEquals(left, region.getLeft(), EPSILON);
+        assertEquals(top, region.getTop(), EPSILON);
+        assertEquals(right, region.getRight(), EPSILON);
+        assertEquals(bottom, region.getBottom(), EPSILON);
+    }
+}
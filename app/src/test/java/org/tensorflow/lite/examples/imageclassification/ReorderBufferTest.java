@@ -0,0 +1,61 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ReorderBufferTest {
+
+    private static final long NONE_PENDING = Long.MAX_VALUE;
+    private static final long MAX_HOLD = 50;
+
+    private final ReorderBuffer<Long> buffer =
+            new ReorderBuffer<>(frame -> frame, 2, MAX_HOLD);
+
+    @Test
+    public void waitsForOlderFramesStillBeingProcessed() {
+        // Frame 20 finished first while frame 10 is still being classified.
+        assertTrue(buffer.add(20L));
+        assertNull(buffer.poll(0, 10));
+        assertEquals(MAX_HOLD, buffer.getWaitNanos(0));
+
+        assertTrue(buffer.add(10L));
+        assertEquals(Long.valueOf(10), buffer.poll(5, NONE_PENDING));
+        assertEquals(Long.valueOf(20), buffer.poll(5, NONE_PENDING));
+        assertNull(buffer.poll(5, NONE_PENDING));
+        assertEquals(0, buffer.getLateCount());
+    }
+
+    @Test
+    public void givesUpWaitingAndDropsTheLateFrame() {
+        buffer.add(20L);
+        assertNull(buffer.poll(100, 10));
+        assertEquals(20, buffer.getWaitNanos(130));
+        assertEquals(Long.valueOf(20), buffer.poll(150, 10));
+
+        assertFalse(buffer.add(10L));
+        assertEquals(1, buffer.getLateCount());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void releasesTheOldestWhenFull() {
+        buffer.add(30L);
+        buffer.add(20L);
+        assertNull(buffer.poll(0, 10));
+
+        buffer.add(40L);
+        assertEquals(Long.valueOf(20), buffer.poll(1, 10));
+        assertNull(buffer.poll(1, 10));
+    }
+
+    @Test
+    public void releasesWithoutWaitingWhenNothingOlderIsPending() {
+        buffer.add(20L);
+
+        assertEquals(Long.valueOf(20), buffer.poll(0, 30));
+        assertEquals(0, buffer.getWaitNanos(0));
+    }
+}
@@ -0,0 +1,50 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class ResultCacheTest {
+
+    @Test
+    public void matchesNearDuplicateHashes() {
+        ResultCache<String> cache = new ResultCache<>(2, 1024, value -> 10);
+        cache.put(0b1010L, "cup");
+
+        assertEquals("cup", cache.get(0b1010L));
+        assertEquals("cup", cache.get(0b1011L));
+        assertEquals("cup", cache.get(0b0011L));
+        assertNull(cache.get(0b0101L));
+
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverBudget() {
+        ResultCache<String> cache = new ResultCache<>(0, 30, value -> 10);
+        cache.put(1L, "a");
+        cache.put(2L, "b");
+        cache.put(3L, "c");
+        cache.get(1L);
+
+        cache.put(4L, "d");
+
+        assertNull(cache.get(2L));
+        assertEquals("a", cache.get(1L));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(30, cache.getUsedBytes());
+    }
+
+    @Test
+    public void invalidateDropsEverything() {
+        ResultCache<String> cache = new ResultCache<>(0, 100, value -> 10);
+        cache.put(1L, "a");
+
+        cache.invalidate();
+
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedBytes());
+    }
+}
@@ -0,0 +1,75 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class ResultSnapshotTest {
+
+    @Test
+    public void keepsTheFirstRowsByIndexWithFormattedScores() {
+        ResultSnapshot snapshot = ResultSnapshot.create(Arrays.asList(
+                new ResultSnapshot.Row("dog", 7, 0.8f),
+                new ResultSnapshot.Row("cat", 3, 0.126f),
+                new ResultSnapshot.Row("bird", 9, 0.05f)), 2);
+
+        assertEquals(2, snapshot.size());
+        assertEquals("cat", snapshot.getFirstLabel());
+        assertEquals("0.13", snapshot.get(0).getDisplayScore());
+        assertEquals("dog", snapshot.get(1).getLabel());
+        assertEquals("0.80", snapshot.get(1).getDisplayScore());
+    }
+
+    @Test
+    public void reportsOnlyRowsThatLookDifferent() {
+        ResultSnapshot previous = ResultSnapshot.create(Arrays.asList(
+                new ResultSnapshot.Row("cat", 3, 0.501f),
+                new ResultSnapshot.Row("dog", 7, 0.2f)), 3);
+        // Same label and same displayed score, then a new score.
+        ResultSnapshot next = ResultSnapshot.create(Arrays.asList(
+                new ResultSnapshot.Row("cat", 3, 0.499f),
+                new ResultSnapshot.Row("dog", 7, 0.3f)), 3);
+
+        assertEquals(Arrays.asList("changed 1"), diff(previous, next));
+    }
+
+    @Test
+    public void reportsInsertedAndRemovedTails() {
+        ResultSnapshot one = ResultSnapshot.create(Arrays.asList(
+                new ResultSnapshot.Row("cat", 3, 0.5f)), 3);
+        ResultSnapshot three = ResultSnapshot.create(Arrays.asList(
+                new ResultSnapshot.Row("cat", 3, 0.5f),
+                new ResultSnapshot.Row("dog", 7, 0.2f),
+                new ResultSnapshot.Row("bird", 9, 0.1f)), 3);
+
+        assertEquals(Arrays.asList("inserted 1 2"), diff(one, three));
+        assertEquals(Arrays.asList("removed 1 2"), diff(three, one));
+        assertEquals(Arrays.asList("removed 0 3"),
+                diff(three, ResultSnapshot.EMPTY));
+        assertEquals(new ArrayList<String>(), diff(three, three));
+    }
+
+    private static List<String> diff(ResultSnapshot previous,
+                                     ResultSnapshot next) {
+        final List<String> changes = new ArrayList<>();
+        next.diff(previous, new ResultSnapshot.ChangeListener() {
+            @Override
+            public void onChanged(int position) {
+                changes.add("changed " + position);
+            }
+
+            @Override
+            public void onInserted(int position, int count) {
+                changes.add("inserted " + position + " " + count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                changes.add("removed " + position + " " + count);
+            }
+        });
+        return changes;
+    }
+}
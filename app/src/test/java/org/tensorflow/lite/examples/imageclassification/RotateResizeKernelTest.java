@@ -0,0 +1,111 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+public class RotateResizeKernelTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+
+    @Test
+    public void rotatesWithoutResamplingAtOriginalSize() {
+        int[] argb = randomPixels(WIDTH, HEIGHT);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            boolean transposed = rotation == 90 || rotation == 270;
+            int outWidth = transposed ? HEIGHT : WIDTH;
+            int outHeight = transposed ? WIDTH : HEIGHT;
+            int[] expected = rotateClockwise(argb, WIDTH, HEIGHT, rotation);
+
+            ByteBuffer out = new RotateResizeKernel(outWidth, outHeight)
+                    .process(argb, WIDTH, HEIGHT, rotation,
+                            ByteBuffer.allocateDirect(expected.length * 3));
+
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals((expected[i] >> 16) & 0xFF, out.get(i * 3) & 0xFF);
+                assertEquals((expected[i] >> 8) & 0xFF,
+                        out.get(i * 3 + 1) & 0xFF);
+                assertEquals(expected[i] & 0xFF, out.get(i * 3 + 2) & 0xFF);
+            }
+        }
+    }
+
+    @Test
+    public void interpolatesBetweenPixelCentres() {
+        // One row of greys 0, 40, 80, 120 halved: each output pixel sits
+        // half way between two source pixels.
+        int[] argb = {grey(0), grey(40), grey(80), grey(120)};
+
+        ByteBuffer out = new RotateResizeKernel(2, 1)
+                .process(argb, 4, 1, 0, ByteBuffer.allocateDirect(6));
+
+        assertEquals(20, out.get(0) & 0xFF);
+        assertEquals(100, out.get(3) & 0xFF);
+    }
+
+    @Test
+    public void interpolatesAlongRotatedAxes() {
+        // A column of greys becomes a row once rotated by 90 degrees.
+        int[] argb = {grey(120), grey(80), grey(40), grey(0)};
+
+        ByteBuffer out = new RotateResizeKernel(2, 1)
+                .process(argb, 1, 4, 90, ByteBuffer.allocateDirect(6));
+
+        assertEquals(20, out.get(0) & 0xFF);
+        assertEquals(100, out.get(3) & 0xFF);
+    }
+
+    @Test
+    public void steadyStateProcessingDoesNotAllocate() {
+        int[] argb = randomPixels(WIDTH, HEIGHT);
+        RotateResizeKernel kernel = new RotateResizeKernel(3, 3);
+        ByteBuffer out = ByteBuffer.allocateDirect(27);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            kernel.process(argb, WIDTH, HEIGHT, rotation, out);
+        }
+        long warmedUp = kernel.getAllocationCount();
+
+        for (int frame = 0; frame < 100; frame++) {
+            kernel.process(argb, WIDTH, HEIGHT, (frame % 4) * 90, out);
+        }
+
+        assertEquals(warmedUp, kernel.getAllocationCount());
+    }
+
+    private static int grey(int value) {
+        return 0xFF000000 | (value << 16) | (value << 8) | value;
+    }
+
+    // Clockwise rotation by whole quarter turns, as Rot90Op(-rotation / 90).
+    private static int[] rotateClockwise(int[] argb,
+                                         int width,
+                                         int height,
+                                         int rotation) {
+        int[] pixels = argb.clone();
+        int w = width;
+        int h = height;
+        for (int turns = rotation / 90; turns > 0; turns--) {
+            int[] rotated = new int[pixels.length];
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    rotated[x * h + (h - 1 - y)] = pixels[y * w + x];
+                }
+            }
+            int swap = w;
+            w = h;
+            h = swap;
+            pixels = rotated;
+        }
+        return pixels;
+    }
+
+    private static int[] randomPixels(int width, int height) {
+        Random random = new Random(42);
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return argb;
+    }
+}
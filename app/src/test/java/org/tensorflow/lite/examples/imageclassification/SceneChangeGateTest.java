@@ -0,0 +1,105 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class SceneChangeGateTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int ROW_STRIDE = WIDTH * 4;
+
+    @Test
+    public void skipsUnchangedFrames() {
+        SceneChangeGate gate = new SceneChangeGate(8, 0.05f, 100);
+        ByteBuffer frame = filledFrame(100);
+
+        assertTrue(gate.shouldProcess(frame, WIDTH, HEIGHT, ROW_STRIDE, 4));
+        assertFalse(gate.shouldProcess(frame, WIDTH, HEIGHT, ROW_STRIDE, 4));
+        assertFalse(gate.shouldProcess(filledFrame(102), WIDTH, HEIGHT,
+                ROW_STRIDE, 4));
+
+        assertEquals(3, gate.getCheckedFrameCount());
+        assertEquals(2, gate.getSkippedFrameCount());
+    }
+
+    @Test
+    public void processesChangedFrames() {
+        SceneChangeGate gate = new SceneChangeGate(8, 0.05f, 100);
+
+        assertTrue(gate.shouldProcess(filledFrame(100), WIDTH, HEIGHT,
+                ROW_STRIDE, 4));
+        assertTrue(gate.shouldProcess(filledFrame(200), WIDTH, HEIGHT,
+                ROW_STRIDE, 4));
+    }
+
+    @Test
+    public void comparesAgainstLastProcessedFrame() {
+        SceneChangeGate gate = new SceneChangeGate(8, 0.05f, 100);
+        gate.shouldProcess(filledFrame(100), WIDTH, HEIGHT, ROW_STRIDE, 4);
+
+        // Each step is below the threshold, but together they drift past it.
+        assertFalse(gate.shouldProcess(filledFrame(108), WIDTH, HEIGHT,
+                ROW_STRIDE, 4));
+        assertTrue(gate.shouldProcess(filledFrame(116), WIDTH, HEIGHT,
+                ROW_STRIDE, 4));
+    }
+
+    @Test
+    public void letsFrameThroughAfterMaxSkippedFrames() {
+        SceneChangeGate gate = new SceneChangeGate(8, 0.05f, 2);
+        ByteBuffer frame = filledFrame(100);
+        gate.shouldProcess(frame, WIDTH, HEIGHT, ROW_STRIDE, 4);
+
+        assertFalse(gate.shouldProcess(frame, WIDTH, HEIGHT, ROW_STRIDE, 4));
+        assertFalse(gate.shouldProcess(frame, WIDTH, HEIGHT, ROW_STRIDE, 4));
+        assertTrue(gate.shouldProcess(frame, WIDTH, HEIGHT, ROW_STRIDE, 4));
+    }
+
+    @Test
+    public void resetForcesNextFrameThrough() {
+        SceneChangeGate gate = new SceneChangeGate(8, 0.05f, 100);
+        ByteBuffer frame = filledFrame(100);
+        gate.shouldProcess(frame, WIDTH, HEIGHT, ROW_STRIDE, 4);
+
+        gate.reset();
+
+        assertTrue(gate.shouldProcess(frame, WIDTH, HEIGHT, ROW_STRIDE, 4));
+    }
+
+    @Test
+    public void comparesLumaPlanes() {
+        SceneChangeGate gate = new SceneChangeGate(8, 0.05f, 100);
+        int rowStride = WIDTH + 3;
+
+        assertTrue(gate.shouldProcessLuma(filledLuma(100, rowStride), WIDTH,
+                HEIGHT, rowStride));
+        assertFalse(gate.shouldProcessLuma(filledLuma(102, rowStride), WIDTH,
+                HEIGHT, rowStride));
+        assertTrue(gate.shouldProcessLuma(filledLuma(200, rowStride), WIDTH,
+                HEIGHT, rowStride));
+    }
+
+    private static ByteBuffer filledLuma(int grey, int rowStride) {
+        ByteBuffer plane = ByteBuffer.allocateDirect(rowStride * HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                plane.put(y * rowStride + x, (byte) grey);
+            }
+        }
+        return plane;
+    }
+
+    private static ByteBuffer filledFrame(int grey) {
+        ByteBuffer frame = ByteBuffer.allocateDirect(ROW_STRIDE * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            frame.put(i * 4, (byte) grey);
+            frame.put(i * 4 + 1, (byte) grey);
+            frame.put(i * 4 + 2, (byte) grey);
+            frame.put(i * 4 + 3, (byte) 0xFF);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,38 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class SpeechScriptTest {
+
+    @Test
+    public void dropsEmptyLines() {
+        SpeechScript script = SpeechScript.of("Hello there!", "", " ",
+                "Shall we begin?");
+
+        assertEquals(Arrays.asList("Hello there!", "Shall we begin?"),
+                script.getLines());
+    }
+
+    @Test
+    public void revealsWordsAsTheyAreSpoken() {
+        SpeechScript.Reveal reveal =
+                new SpeechScript.Reveal("Hi, my name is Sera.");
+
+        // Word ranges as reported by the engine: [0, 3), [4, 6), ...
+        assertEquals("Hi, ", reveal.upTo(3));
+        assertEquals("", reveal.upTo(3));
+        assertEquals("my name ", reveal.upTo(11));
+        assertEquals("is Sera. ", reveal.finish());
+        assertEquals("", reveal.finish());
+        assertEquals("", reveal.upTo(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void finishingRevealsTheWholeLine() {
+        SpeechScript.Reveal reveal = new SpeechScript.Reveal("After that,");
+
+        assertEquals("After that, ", reveal.finish());
+    }
+}
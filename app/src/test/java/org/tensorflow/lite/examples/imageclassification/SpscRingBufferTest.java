@@ -0,0 +1,69 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class SpscRingBufferTest {
+
+    @Test
+    public void evictsOldestWhenFull() {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(2);
+
+        assertNull(buffer.offer(1));
+        assertNull(buffer.offer(2));
+        assertEquals(Integer.valueOf(1), buffer.offer(3));
+
+        assertEquals(Integer.valueOf(2), buffer.poll());
+        assertEquals(Integer.valueOf(3), buffer.poll());
+        assertNull(buffer.poll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCapacityThatIsNotAPowerOfTwo() {
+        new SpscRingBuffer<Integer>(3);
+    }
+
+    @Test
+    public void concurrentConsumerSeesIncreasingSequenceAndNothingIsLost()
+            throws InterruptedException {
+        final int items = 200_000;
+        SpscRingBuffer<Long> buffer = new SpscRingBuffer<>(4);
+        AtomicLong evicted = new AtomicLong();
+        AtomicLong consumed = new AtomicLong();
+        long[] last = {-1};
+        boolean[] ordered = {true};
+
+        Thread consumer = new Thread(() -> {
+            while (true) {
+                Long item = buffer.poll();
+                if (item == null) {
+                    continue;
+                }
+                if (item == Long.MAX_VALUE) {
+                    return;
+                }
+                if (item <= last[0]) {
+                    ordered[0] = false;
+                }
+                last[0] = item;
+                consumed.incrementAndGet();
+            }
+        });
+        consumer.start();
+        for (long i = 0; i < items; i++) {
+            if (buffer.offer(i) != null) {
+                evicted.incrementAndGet();
+            }
+        }
+        if (buffer.offer(Long.MAX_VALUE) != null) {
+            evicted.incrementAndGet();
+        }
+        consumer.join(10_000);
+
+        assertTrue(ordered[0]);
+        assertEquals(items, consumed.get() + evicted.get());
+    }
+}
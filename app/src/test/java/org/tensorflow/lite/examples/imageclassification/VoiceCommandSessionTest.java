@@ -0,0 +1,223 @@
+package org.tensorflow.lite.examples.imageclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class VoiceCommandSessionTest {
+
+    private enum Command {
+        START, STOP
+    }
+
+    private final FakeRecognizer recognizer = new FakeRecognizer();
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final RecordingListener listener = new RecordingListener();
+    private final VoiceCommandSession<Command> session =
+            new VoiceCommandSession<>(recognizer, scheduler,
+                    new CommandMatcher<Command>()
+                            .add(Command.START, "start", "let's go")
+                            .add(Command.STOP, "stop"),
+                    listener, 100, 800);
+
+    @Test
+    public void matcherNormalizesAndToleratesNearMisses() {
+        CommandMatcher<Command> matcher = new CommandMatcher<Command>()
+                .add(Command.START, "start", "yes", "yeah", "let's go");
+
+        assertEquals(Command.START,
+                matcher.match("OK, START now!").getCommand());
+        assertEquals(Command.START, matcher.match("lets go").getCommand());
+        assertEquals(Command.START, matcher.match("stark").getCommand());
+        assertEquals(1f,
+                matcher.match("Let\u2019s... go").getSimilarity(), 0f);
+        assertEquals(Command.START, matcher.match("st\u00e1rt").getCommand());
+        assertNull(matcher.match("stay"));
+        assertNull(matcher.match(""));
+
+        // Ordinary words and negations near the phrases are not commands.
+        assertNull(matcher.match("no let's not"));
+        assertNull(matcher.match("happy new year"));
+        assertNull(matcher.match("star"));
+        assertNull(matcher.match("yet"));
+        assertNull(matcher.match("don't start yet"));
+        assertNull(matcher.match("no, yes"));
+        assertEquals(Command.START, matcher.match("yes, not now").getCommand());
+    }
+
+    @Test
+    public void actsOnPartialResultsAndMeasuresLatency() {
+        session.start();
+        assertEquals(1, recognizer.starts);
+
+        scheduler.now = 1000;
+        session.onBeginningOfSpeech();
+        scheduler.now = 1150;
+        session.onPartialResults(Collections.singletonList("yes let's"));
+        assertTrue(listener.commands.isEmpty());
+        scheduler.now = 1400;
+        session.onPartialResults(Collections.singletonList("yes let's go"));
+
+        assertEquals(Arrays.asList(Command.START), listener.commands);
+        assertEquals(Arrays.asList(400L), listener.latencies);
+        assertFalse(session.isActive());
+        assertEquals(1, recognizer.cancels);
+        // The final result of the same utterance is ignored.
+        session.onResults(Collections.singletonList("yes let's go"));
+        assertEquals(1, listener.commands.size());
+    }
+
+    @Test
+    public void matchesOnlyTheTopHypothesisOfPartialResults() {
+        session.start();
+        session.onPartialResults(Arrays.asList("stay", "start"));
+
+        assertTrue(listener.commands.isEmpty());
+        assertTrue(session.isActive());
+    }
+
+    @Test
+    public void listensAgainAtOnceAfterSilence() {
+        session.start();
+        for (int i = 0; i < 3; i++) {
+            session.onNothingHeard();
+        }
+
+        assertEquals(4, recognizer.starts);
+        assertTrue(scheduler.tasks.isEmpty());
+        session.onError(true);
+        assertEquals(100L, scheduler.runNext());
+    }
+
+    @Test
+    public void listensAgainAfterSpeechThatIsNotACommand() {
+        session.start();
+        session.onPartialResults(Collections.singletonList("hello"));
+        session.onResults(Arrays.asList("hello there", "yellow there"));
+
+        assertEquals(Arrays.asList("hello there"), listener.notCommands);
+        assertEquals(2, recognizer.starts);
+        assertTrue(scheduler.tasks.isEmpty());
+
+        session.onResults(Arrays.asList("please stop"));
+        assertEquals(Arrays.asList(Command.STOP), listener.commands);
+        assertEquals(Arrays.asList(-1L), listener.latencies);
+    }
+
+    @Test
+    public void restartsAfterErrorsWithBoundedBackoff() {
+        session.start();
+        List<Long> delays = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            session.onError(true);
+            delays.add(scheduler.runNext());
+        }
+
+        assertEquals(Arrays.asList(100L, 200L, 400L, 800L, 800L, 800L),
+                delays);
+        assertEquals(7, recognizer.starts);
+
+        // Speech resets the backoff.
+        session.onPartialResults(Collections.singletonList("um"));
+        session.onError(true);
+        assertEquals(100L, scheduler.runNext());
+    }
+
+    @Test
+    public void stopCancelsPendingRestartAndUnrecoverableErrorsEnd() {
+        session.start();
+        session.onError(true);
+        session.stop();
+        assertTrue(scheduler.tasks.isEmpty());
+        assertEquals(1, recognizer.starts);
+
+        session.start();
+        session.onError(false);
+        assertFalse(session.isActive());
+        assertEquals(1, listener.unavailable);
+        assertTrue(scheduler.tasks.isEmpty());
+    }
+
+    private static final class FakeRecognizer
+            implements VoiceCommandSession.Recognizer {
+        int starts;
+        int cancels;
+
+        @Override
+        public void startListening() {
+            starts++;
+        }
+
+        @Override
+        public void cancel() {
+            cancels++;
+        }
+    }
+
+    private static final class FakeScheduler
+            implements VoiceCommandSession.Scheduler {
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<Long> delays = new ArrayList<>();
+        long now;
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            tasks.add(task);
+            delays.add(delayMillis);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            int index = tasks.indexOf(task);
+            while (index >= 0) {
+                tasks.remove(index);
+                delays.remove(index);
+                index = tasks.indexOf(task);
+            }
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return now;
+        }
+
+        // Runs the oldest task and returns its delay.
+        long runNext() {
+            long delay = delays.remove(0);
+            now += delay;
+            tasks.remove(0).run();
+            return delay;
+        }
+    }
+
+    private static final class RecordingListener
+            implements VoiceCommandSession.Listener<Command> {
+        final List<Command> commands = new ArrayList<>();
+        final List<Long> latencies = new ArrayList<>();
+        final List<String> notCommands = new ArrayList<>();
+        int unavailable;
+
+        @Override
+        public void onCommand(CommandMatcher.Match<Command> match,
+                              long latencyMillis) {
+            commands.add(match.getCommand());
+            latencies.add(latencyMillis);
+        }
+
+        @Override
+        public void onNotACommand(String text) {
+            notCommands.add(text);
+        }
+
+        @Override
+        public void onUnavailable() {
+            unavailable++;
+        }
+    }
+}
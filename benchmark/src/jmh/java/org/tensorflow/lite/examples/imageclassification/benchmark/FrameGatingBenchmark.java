@@ -0,0 +1,52 @@
+package org.tensorflow.lite.examples.imageclassification.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tensorflow.lite.examples.imageclassification.PerceptualHash;
+import org.tensorflow.lite.examples.imageclassification.SceneChangeGate;
+
+/**
+ * Per-frame checks that decide whether a frame needs inference at all: the
+ * scene change gate on the camera plane and the perceptual hash of the model
+ * input.
+ */
+@State(Scope.Thread)
+public class FrameGatingBenchmark {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int MODEL_SIZE = 224;
+
+    private ByteBuffer plane;
+    private ByteBuffer modelInput;
+    private SceneChangeGate gate;
+    private PerceptualHash hasher;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        byte[] pixels = new byte[WIDTH * HEIGHT * 4];
+        random.nextBytes(pixels);
+        plane = ByteBuffer.allocateDirect(pixels.length);
+        plane.put(pixels).rewind();
+        byte[] rgb = new byte[MODEL_SIZE * MODEL_SIZE * 3];
+        random.nextBytes(rgb);
+        modelInput = ByteBuffer.allocateDirect(rgb.length);
+        modelInput.put(rgb).rewind();
+        gate = new SceneChangeGate();
+        hasher = new PerceptualHash();
+    }
+
+    @Benchmark
+    public boolean sceneChangeGate() {
+        return gate.shouldProcess(plane, WIDTH, HEIGHT, WIDTH * 4, 4);
+    }
+
+    @Benchmark
+    public long perceptualHash() {
+        return hasher.compute(modelInput, MODEL_SIZE, MODEL_SIZE);
+    }
+}
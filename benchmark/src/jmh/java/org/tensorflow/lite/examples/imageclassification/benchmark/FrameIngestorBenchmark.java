@@ -0,0 +1,44 @@
+package org.tensorflow.lite.examples.imageclassification.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tensorflow.lite.examples.imageclassification.FrameIngestor;
+
+/**
+ * RGBA camera plane to model input conversion, including rotation and the
+ * downscale to model resolution.
+ */
+@State(Scope.Thread)
+public class FrameIngestorBenchmark {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int MODEL_SIZE = 224;
+
+    @Param({"0", "90", "180", "270"})
+    public int rotationDegrees;
+
+    private ByteBuffer plane;
+    private FrameIngestor ingestor;
+
+    @Setup
+    public void setUp() {
+        byte[] pixels = new byte[WIDTH * HEIGHT * 4];
+        new Random(0).nextBytes(pixels);
+        plane = ByteBuffer.allocateDirect(pixels.length);
+        plane.put(pixels).rewind();
+        ingestor = new FrameIngestor(MODEL_SIZE, MODEL_SIZE);
+        // Build the sampling table outside of the measured loop.
+        ingestor.ingest(plane, WIDTH, HEIGHT, WIDTH * 4, 4, rotationDegrees);
+    }
+
+    @Benchmark
+    public ByteBuffer ingest() {
+        return ingestor.ingest(plane, WIDTH, HEIGHT, WIDTH * 4, 4,
+                rotationDegrees);
+    }
+}
@@ -0,0 +1,51 @@
+package org.tensorflow.lite.examples.imageclassification.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tensorflow.lite.examples.imageclassification.ResultOrdering;
+
+/**
+ * The copy, sort and sublist done for every result handed to
+ * ClassificationResultAdapter.updateResults.
+ */
+@State(Scope.Thread)
+public class ResultOrderingBenchmark {
+    @Param({"1", "3", "10"})
+    public int results;
+
+    private List<LabelScore> categories;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        categories = new ArrayList<>();
+        for (int i = 0; i < results; i++) {
+            categories.add(new LabelScore("label" + i, random.nextInt(1001),
+                    random.nextFloat()));
+        }
+    }
+
+    @Benchmark
+    public List<LabelScore> firstByIndex() {
+        return ResultOrdering.firstByIndex(categories, 3, item -> item.index);
+    }
+
+    /** Stand-in for the Task Library Category, which needs Android. */
+    static final class LabelScore {
+        final String label;
+        final int index;
+        final float score;
+
+        LabelScore(String label, int index, float score) {
+            this.label = label;
+            this.index = index;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.tensorflow.lite.examples.imageclassification.benchmark;
+
+/**
+ * Selects the highest scores of a score vector without sorting it. Runs in
+ * O(n * k) with no allocation. The app gets its top categories from the Task
+ * Library already selected, so this only measures what doing it by hand on a
+ * raw score vector would cost.
+ */
+public final class TopK {
+    private TopK() {
+    }
+
+    /**
+     * Writes the indices of the {@code k} highest scores that are at least
+     * {@code threshold} into {@code outIndices}, highest first. Ties keep the
+     * lower index first.
+     *
+     * @return the number of indices written, at most
+     * {@code min(k, outIndices.length)}
+     */
+    public static int select(float[] scores,
+                             int k,
+                             float threshold,
+                             int[] outIndices) {
+        int limit = Math.min(k, outIndices.length);
+        int count = 0;
+        for (int i = 0; i < scores.length; i++) {
+            float score = scores[i];
+            if (score < threshold
+                    || (count == limit
+                    && (limit == 0 || score <= scores[outIndices[count - 1]]))) {
+                continue;
+            }
+            int position = count < limit ? count++ : count - 1;
+            while (position > 0 && scores[outIndices[position - 1]] < score) {
+                outIndices[position] = outIndices[position - 1];
+                position--;
+            }
+            outIndices[position] = i;
+        }
+        return count;
+    }
+}
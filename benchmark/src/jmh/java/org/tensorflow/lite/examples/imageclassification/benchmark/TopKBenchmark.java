@@ -0,0 +1,36 @@
+package org.tensorflow.lite.examples.imageclassification.benchmark;
+
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Top-k selection over a classifier score vector. */
+@State(Scope.Thread)
+public class TopKBenchmark {
+    @Param({"1001"})
+    public int labels;
+
+    @Param({"1", "3", "5"})
+    public int k;
+
+    private float[] scores;
+    private int[] indices;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        scores = new float[labels];
+        for (int i = 0; i < labels; i++) {
+            scores[i] = random.nextFloat();
+        }
+        indices = new int[k];
+    }
+
+    @Benchmark
+    public int select() {
+        return TopK.select(scores, k, 0f, indices);
+    }
+}
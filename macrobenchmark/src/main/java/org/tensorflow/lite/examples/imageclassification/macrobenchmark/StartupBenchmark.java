@@ -0,0 +1,60 @@
+package org.tensorflow.lite.examples.imageclassification.macrobenchmark;
+
+import android.content.Intent;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Until;
+import java.util.Collections;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures launcher-to-first-result time. The app reports itself fully drawn
+ * when the first classification is on screen, so StartupTimingMetric's
+ * timeToFullDisplayMs is the number to track release over release.
+ *
+ * <p>The camera screen is started directly: the landing screen waits for a
+ * spoken command, which a benchmark cannot give. Point the camera at a
+ * textured scene so classification results keep arriving.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    private static final String PACKAGE = "org.tensorflow.lite.examples.imageclassification";
+    private static final int ITERATIONS = 10;
+    private static final long FIRST_RESULT_TIMEOUT_MS = 10_000;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void launcherToFirstResult() {
+        benchmarkRule.measureRepeated(
+                PACKAGE,
+                Collections.singletonList(new StartupTimingMetric()),
+                CompilationMode.DEFAULT,
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    scope.getDevice().executeShellCommand(
+                            "pm grant " + PACKAGE + " android.permission.CAMERA");
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Intent intent = new Intent(Intent.ACTION_MAIN)
+                            .setClassName(PACKAGE, PACKAGE + ".MainActivity");
+                    scope.startActivityAndWait(intent);
+                    // The result list gets its first row with the first result.
+                    scope.getDevice().wait(
+                            Until.hasObject(By.res(PACKAGE, "tvLabel")),
+                            FIRST_RESULT_TIMEOUT_MS);
+                    return Unit.INSTANCE;
+                });
+    }
+}